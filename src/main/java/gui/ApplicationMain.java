@@ -13,6 +13,10 @@ import java.io.IOException;
  * @author mjo, LiChieh Chou
  */
 public class ApplicationMain extends Application {
+    /**
+     * the controller of the user interface
+     */
+    private UserInterfaceController controller;
 
     /**
      * Creating the stage and showing it. This is where the initial size and the
@@ -25,6 +29,7 @@ public class ApplicationMain extends Application {
     public void start(Stage stage) throws IOException {
         FXMLLoader fxmlLoader = new FXMLLoader(ApplicationMain.class.getResource("UserInterface.fxml"));
         Scene scene = new Scene(fxmlLoader.load(), 700, 720);
+        controller = fxmlLoader.getController();
         stage.setTitle("FloodPipe");
         stage.setScene(scene);
         stage.setMinWidth(660);
@@ -32,6 +37,14 @@ public class ApplicationMain extends Application {
         stage.show();
     }
 
+    /**
+     * Stopping the background work of the game when the window is closed.
+     */
+    @Override
+    public void stop() {
+        if (controller != null) controller.shutdown();
+    }
+
     /**
      * Main method
      *
@@ -0,0 +1,57 @@
+package gui;
+
+/**
+ * The BoardRenderer Enum lists the ways to show the play field, which can be chosen in the settings.
+ *
+ * @author LiChieh Chou
+ */
+public enum BoardRenderer {
+    AUTOMATIC("Automatic"),
+    CELLS("Cells"),
+    CANVAS("Canvas");
+
+    /**
+     * the number of cells above which the automatic choice draws the play field on a canvas
+     */
+    public static final int CANVAS_CELLS = 50 * 50;
+
+    /**
+     * the name shown in the settings
+     */
+    private final String text;
+
+    BoardRenderer(String text){
+        this.text = text;
+    }
+
+    /**
+     * to check if a play field of a size is drawn on a canvas
+     *
+     * @param columns The size(columns) of the play field
+     * @param rows The size(rows) of the play field
+     * @return true, to draw it on a CanvasBoard; false, to show it with a GridBoard
+     */
+    public boolean usesCanvas(int columns, int rows){
+        return switch (this) {
+            case AUTOMATIC -> (long) columns * rows > CANVAS_CELLS;
+            case CELLS -> false;
+            case CANVAS -> true;
+        };
+    }
+
+    /**
+     * to create the view of a play field
+     *
+     * @param columns The size(columns) of the play field
+     * @param rows The size(rows) of the play field
+     * @return the view
+     */
+    public BoardView createBoard(int columns, int rows){
+        return usesCanvas(columns, rows) ? new CanvasBoard(columns, rows) : new GridBoard(columns, rows);
+    }
+
+    @Override
+    public String toString(){
+        return text;
+    }
+}
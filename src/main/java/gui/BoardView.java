@@ -0,0 +1,126 @@
+package gui;
+
+import javafx.scene.input.DragEvent;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.TransferMode;
+import javafx.scene.layout.Region;
+import logic.Position;
+
+import java.util.function.BiConsumer;
+
+/**
+ * The view of the play field, which shows the pipes of all cells.
+ * A view finds the cell of a mouse press or a drop by itself and passes its position on to the handlers,
+ * so the user interface works with each way of drawing the cells.
+ *
+ * @author LiChieh Chou
+ */
+public abstract class BoardView extends Region {
+    /**
+     * the state of a cell on which no pipe is shown yet
+     */
+    protected static final byte EMPTY = -1;
+
+    /**
+     * The size(columns, rows) of the play field
+     */
+    protected final int columns, rows;
+
+    /**
+     * the handler of a mouse press on a cell
+     */
+    private BiConsumer<Position, MouseButton> onPipePressed = (pos, button) -> {};
+
+    /**
+     * the handler of a pipe dropped on a cell, which gets the name of the dropped PipeImage
+     */
+    private BiConsumer<Position, String> onPipeDropped = (pos, pipeStr) -> {};
+
+    /**
+     * Constructor for a view of the play field
+     *
+     * @param columns The size(columns) of the play field
+     * @param rows The size(rows) of the play field
+     */
+    protected BoardView(int columns, int rows) {
+        this.columns = columns;
+        this.rows = rows;
+    }
+
+    /**
+     * to show a pipe in a cell
+     *
+     * @param column the column of the cell
+     * @param row the row of the cell
+     * @param pipeNumber the pipe number, see {@link logic.Pipe#getPipeNumber()}
+     * @param isFilled true, to show the filled pipe; false, otherwise
+     * @param isSource true, to show the wheel above the pipe; false, otherwise
+     */
+    public abstract void showPipe(int column, int row, int pipeNumber, boolean isFilled, boolean isSource);
+
+    /**
+     * to put the shown state of a cell into one number
+     *
+     * @param pipeNumber the pipe number
+     * @param isFilled true, if the filled pipe is shown; false, otherwise
+     * @param isSource true, if the wheel is shown above the pipe; false, otherwise
+     * @return the state: the sprite of the pipe in the bits from 1 on and the wheel in bit 0
+     */
+    protected static byte toState(int pipeNumber, boolean isFilled, boolean isSource) {
+        return (byte) ((SpriteAtlas.getSprite(pipeNumber, isFilled) << 1) | (isSource ? 1 : 0));
+    }
+
+    /**
+     * to set the handler of a mouse press on a cell
+     *
+     * @param onPipePressed the handler, which gets the position of the cell and the pressed button
+     */
+    public void setOnPipePressed(BiConsumer<Position, MouseButton> onPipePressed) {
+        this.onPipePressed = onPipePressed;
+    }
+
+    /**
+     * to set the handler of a pipe dropped on a cell
+     *
+     * @param onPipeDropped the handler, which gets the position of the cell and the name of the dropped PipeImage
+     */
+    public void setOnPipeDropped(BiConsumer<Position, String> onPipeDropped) {
+        this.onPipeDropped = onPipeDropped;
+    }
+
+    /**
+     * to pass a mouse press on a cell to the handler
+     *
+     * @param pos the position of the cell, or null if the press is not on a cell
+     * @param event the event of the press
+     */
+    protected void pressPipe(Position pos, MouseEvent event) {
+        if (pos != null) onPipePressed.accept(pos, event.getButton());
+    }
+
+    /**
+     * to pass a pipe dropped on a cell to the handler
+     *
+     * @param pos the position of the cell, or null if the drop is not on a cell
+     * @param event the event of the drop
+     */
+    protected void dropPipe(Position pos, DragEvent event) {
+        if ((pos != null) && event.getDragboard().hasString()) {
+            onPipeDropped.accept(pos, event.getDragboard().getString());
+            event.setDropCompleted(true);
+        }
+        event.consume();
+    }
+
+    /**
+     * to accept a pipe dragged over the view
+     *
+     * @param event the event of the drag
+     */
+    protected void dragPipeOver(DragEvent event) {
+        if (event.getDragboard().hasString()) {
+            event.acceptTransferModes(TransferMode.ANY);
+        }
+    }
+}
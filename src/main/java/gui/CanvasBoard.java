@@ -0,0 +1,342 @@
+package gui;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import logic.Position;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The view of the play field which draws the cells on a single Canvas, from the {@link SpriteAtlas}.
+ * There are no nodes, bindings or handlers per cell, so the view also works for large play fields.
+ * Mouse presses and drops are hit-tested by computing the cell under the pointer.
+ * The canvas is only as large as the view and shows a part of the play field, which can be zoomed with the mouse wheel
+ * and moved by dragging with the middle mouse button. Only the cells in this viewport are drawn;
+ * a pipe shown on a cell outside of it is only kept in the state of the cell and drawn when the cell is moved into view.
+ * So the memory of the canvas and the time of a frame do not grow with the size of the play field.
+ * A shown pipe is not drawn at once, the changed cells are drawn together in the next layout pass,
+ * so that many pipes shown after another, e.g. the whole play field, are drawn once per pulse.
+ *
+ * @author LiChieh Chou
+ */
+public class CanvasBoard extends BoardView {
+    /**
+     * the smallest size of a cell in pixels, which limits the number of cells drawn in a frame
+     */
+    private static final double MIN_CELL_SIZE = 4;
+
+    /**
+     * the largest size of a cell in pixels
+     */
+    private static final double MAX_CELL_SIZE = 240;
+
+    /**
+     * the factor by which one step of the mouse wheel zooms in
+     */
+    private static final double ZOOM_STEP = 1.25;
+
+    /**
+     * the canvas on which the cells are drawn, as large as the view
+     */
+    private final Canvas canvas = new Canvas();
+
+    /**
+     * the shown state of each cell, at the index row * columns + column:
+     * the sprite of the pipe and if the wheel is shown, see {@link #toState}
+     */
+    private final byte[] states;
+
+    /**
+     * the cells in the viewport which are changed and not drawn yet
+     */
+    private final BitSet dirtyCells;
+
+    /**
+     * the number of cells in dirtyCells
+     */
+    private int dirtyCount;
+
+    /**
+     * the size of a cell in pixels
+     */
+    private double cellSize;
+
+    /**
+     * the point of the play field, in pixels, at the upper left corner of the canvas;
+     * negative, if the play field is smaller than the view and centered in it
+     */
+    private double offsetX, offsetY;
+
+    /**
+     * true, if the player zoomed; false, if the size of the cells fits the play field into the view
+     */
+    private boolean zoomed;
+
+    /**
+     * the last position of the mouse while the view is moved
+     */
+    private double panX, panY;
+
+    /**
+     * The constructor. Creates the canvas, on which the pipes are drawn when they are shown.
+     *
+     * @param columns The size(columns) of the play field
+     * @param rows The size(rows) of the play field
+     */
+    public CanvasBoard(int columns, int rows) {
+        super(columns, rows);
+        states = new byte[columns * rows];
+        Arrays.fill(states, EMPTY);
+        dirtyCells = new BitSet(columns * rows);
+        getChildren().add(canvas);
+
+        canvas.setOnMousePressed(this::onMousePressed);
+        canvas.setOnMouseDragged(this::onMouseDragged);
+        canvas.setOnScroll(this::onScroll);
+        canvas.setOnDragDropped(event -> dropPipe(getPosition(event.getX(), event.getY()), event));
+        canvas.setOnDragOver(this::dragPipeOver);
+    }
+
+    @Override
+    public void showPipe(int column, int row, int pipeNumber, boolean isFilled, boolean isSource) {
+        int index = row * columns + column;
+        byte state = toState(pipeNumber, isFilled, isSource);
+        if (states[index] != state) {
+            states[index] = state;
+            if (isVisible(column, row) && !dirtyCells.get(index)) {
+                dirtyCells.set(index);
+                dirtyCount++;
+                setNeedsLayout(true);
+            }
+        }
+    }
+
+    /**
+     * to fit the canvas into the view and to draw the cells in it, or only the changed cells if nothing else changed.
+     * Until the player zooms, the cells are as large as possible, so that the whole play field fits into the view.
+     */
+    @Override
+    protected void layoutChildren() {
+        double width = getWidth();
+        double height = getHeight();
+        double size = zoomed ? cellSize : getFittingCellSize();
+        if ((canvas.getWidth() != width) || (canvas.getHeight() != height) || (size != cellSize)) {
+            canvas.setWidth(width);
+            canvas.setHeight(height);
+            if (size != cellSize) zoomTo(size, width / 2, height / 2);
+            else moveTo(offsetX, offsetY);
+        } else if (dirtyCount > 0) {
+            drawDirtyCells();
+        }
+    }
+
+    /**
+     * to get the size of the cells with which the play field fits into the view
+     *
+     * @return the size of a cell in pixels, not smaller than the smallest size
+     */
+    private double getFittingCellSize() {
+        return Math.max(MIN_CELL_SIZE, Math.floor(Math.min(getWidth() / columns, getHeight() / rows)));
+    }
+
+    /**
+     * The handle of a mouse press on the canvas,
+     * which starts to move the view with the middle button and is passed on as a press on a cell otherwise
+     *
+     * @param event the event of the press
+     */
+    private void onMousePressed(MouseEvent event) {
+        if (event.getButton() == MouseButton.MIDDLE) {
+            panX = event.getX();
+            panY = event.getY();
+        } else {
+            pressPipe(getPosition(event.getX(), event.getY()), event);
+        }
+    }
+
+    /**
+     * The handle of a mouse drag on the canvas, which moves the view while the middle button is down
+     *
+     * @param event the event of the drag
+     */
+    private void onMouseDragged(MouseEvent event) {
+        if (event.isMiddleButtonDown()) {
+            moveTo(offsetX - (event.getX() - panX), offsetY - (event.getY() - panY));
+            panX = event.getX();
+            panY = event.getY();
+        }
+    }
+
+    /**
+     * The handle of the mouse wheel, which zooms in or out around the mouse position
+     *
+     * @param event the event of the scroll
+     */
+    private void onScroll(ScrollEvent event) {
+        if (event.getDeltaY() != 0) {
+            double factor = (event.getDeltaY() > 0) ? ZOOM_STEP : 1 / ZOOM_STEP;
+            double size = Math.round(cellSize * factor);
+            if (size == cellSize) size += (factor > 1) ? 1 : -1;
+            double fittingSize = getFittingCellSize();
+            size = Math.max(fittingSize, Math.min(MAX_CELL_SIZE, size));
+
+            zoomed = (size != fittingSize);
+            zoomTo(size, event.getX(), event.getY());
+        }
+        event.consume();
+    }
+
+    /**
+     * to change the size of the cells, so that the point of the play field under a point of the canvas stays there
+     *
+     * @param size the new size of a cell in pixels
+     * @param x the x coordinate on the canvas
+     * @param y the y coordinate on the canvas
+     */
+    private void zoomTo(double size, double x, double y) {
+        double scale = (cellSize > 0) ? size / cellSize : 1;
+        cellSize = size;
+        moveTo((offsetX + x) * scale - x, (offsetY + y) * scale - y);
+    }
+
+    /**
+     * to move the view to a point of the play field and to draw the cells in it.
+     * The view is kept on the play field; if the play field is smaller than the view, it is centered.
+     *
+     * @param x the x coordinate of the play field, in pixels, for the left edge of the canvas
+     * @param y the y coordinate of the play field, in pixels, for the upper edge of the canvas
+     */
+    private void moveTo(double x, double y) {
+        offsetX = clampOffset(x, columns * cellSize, canvas.getWidth());
+        offsetY = clampOffset(y, rows * cellSize, canvas.getHeight());
+        drawVisibleCells();
+    }
+
+    /**
+     * to keep an offset of the view on the play field
+     *
+     * @param offset the offset
+     * @param boardSize the size of the play field in pixels
+     * @param viewSize the size of the view in pixels
+     * @return the offset within the play field, or the offset which centers the play field if it is smaller than the view
+     */
+    private static double clampOffset(double offset, double boardSize, double viewSize) {
+        double toReturn;
+        if (boardSize <= viewSize) toReturn = -Math.floor((viewSize - boardSize) / 2);
+        else toReturn = Math.round(Math.min(boardSize - viewSize, Math.max(0, offset)));
+        return toReturn;
+    }
+
+    /**
+     * to get the position of the cell at a point of the canvas
+     *
+     * @param x the x coordinate on the canvas
+     * @param y the y coordinate on the canvas
+     * @return the position of the cell, or null if the point is not on a cell
+     */
+    private Position getPosition(double x, double y) {
+        Position toReturn = null;
+        if (cellSize > 0) {
+            int column = (int) Math.floor((x + offsetX) / cellSize);
+            int row = (int) Math.floor((y + offsetY) / cellSize);
+            if ((column >= 0) && (column < columns) && (row >= 0) && (row < rows))
+                toReturn = new Position(column, row);
+        }
+        return toReturn;
+    }
+
+    /**
+     * to draw all cells in the viewport
+     */
+    private void drawVisibleCells() {
+        dirtyCells.clear();
+        dirtyCount = 0;
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        if (cellSize > 0) {
+            SpriteAtlas atlas = SpriteAtlas.getInstance(cellSize);
+            int firstColumn = Math.max(0, (int) Math.floor(offsetX / cellSize));
+            int lastColumn = Math.min(columns - 1, (int) Math.floor((offsetX + canvas.getWidth()) / cellSize));
+            int firstRow = Math.max(0, (int) Math.floor(offsetY / cellSize));
+            int lastRow = Math.min(rows - 1, (int) Math.floor((offsetY + canvas.getHeight()) / cellSize));
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    drawCell(gc, atlas, column, row);
+                }
+            }
+        }
+    }
+
+    /**
+     * to draw the changed cells in the viewport; if most of the viewport changed, it is drawn again as a whole
+     */
+    private void drawDirtyCells() {
+        double visibleCells = Math.ceil(canvas.getWidth() / cellSize + 1) * Math.ceil(canvas.getHeight() / cellSize + 1);
+        if (dirtyCount * 2 > visibleCells) {
+            drawVisibleCells();
+        } else {
+            GraphicsContext gc = canvas.getGraphicsContext2D();
+            SpriteAtlas atlas = SpriteAtlas.getInstance(cellSize);
+            for (int index = dirtyCells.nextSetBit(0); index >= 0; index = dirtyCells.nextSetBit(index + 1)) {
+                drawCell(gc, atlas, index % columns, index / columns);
+            }
+            dirtyCells.clear();
+            dirtyCount = 0;
+        }
+    }
+
+    /**
+     * to check if a cell is in the viewport
+     *
+     * @param column the column of the cell
+     * @param row the row of the cell
+     * @return true, if at least a part of the cell is in the viewport; false, otherwise
+     */
+    private boolean isVisible(int column, int row) {
+        double x = column * cellSize - offsetX;
+        double y = row * cellSize - offsetY;
+        return (cellSize > 0) && (x + cellSize > 0) && (x < canvas.getWidth()) && (y + cellSize > 0) && (y < canvas.getHeight());
+    }
+
+    /**
+     * to draw one cell with its shown state, if it is in the viewport
+     *
+     * @param gc the graphics context of the canvas
+     * @param atlas the sprite atlas for the size of the cells
+     * @param column the column of the cell
+     * @param row the row of the cell
+     */
+    private void drawCell(GraphicsContext gc, SpriteAtlas atlas, int column, int row) {
+        if (isVisible(column, row)) {
+            double x = column * cellSize - offsetX;
+            double y = row * cellSize - offsetY;
+            gc.clearRect(x, y, cellSize, cellSize);
+
+            int state = states[row * columns + column];
+            if (state != EMPTY) {
+                drawSprite(gc, atlas, state >> 1, x, y);
+                if ((state & 1) != 0) drawSprite(gc, atlas, SpriteAtlas.getSourceSprite(), x, y);
+            }
+        }
+    }
+
+    /**
+     * to draw a sprite into a cell, the sprite already has the size of the cell unless the cells are larger
+     *
+     * @param gc the graphics context of the canvas
+     * @param atlas the sprite atlas
+     * @param sprite the index of the sprite
+     * @param x the x coordinate of the cell on the canvas
+     * @param y the y coordinate of the cell on the canvas
+     */
+    private void drawSprite(GraphicsContext gc, SpriteAtlas atlas, int sprite, double x, double y) {
+        Rectangle2D viewport = atlas.getViewport(sprite);
+        gc.drawImage(atlas.getImage(), viewport.getMinX(), viewport.getMinY(), viewport.getWidth(), viewport.getHeight(),
+                x, y, cellSize, cellSize);
+    }
+}
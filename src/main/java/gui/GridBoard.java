@@ -0,0 +1,160 @@
+package gui;
+
+import javafx.scene.shape.Rectangle;
+import logic.Position;
+
+import java.util.Arrays;
+
+/**
+ * The view of the play field with a PipeCell for each cell.
+ * Each cell is a node of its own, which is fine for the usual sizes of the play field,
+ * but the scene graph grows with the number of cells.
+ * The view places the cells itself: the size of the cells is computed once in each layout pass
+ * and only the cells in the view are placed, there are no bindings or handlers per cell.
+ * Mouse presses and drops are hit-tested by computing the cell under the pointer.
+ *
+ * @author LiChieh Chou
+ */
+public class GridBoard extends BoardView {
+    /**
+     * the smallest size of a cell in pixels; if the cells do not fit into the view, the cells outside of it are hidden
+     */
+    private static final double MIN_CELL_SIZE = 30;
+
+    /**
+     * the cells which show the pipes' images
+     */
+    private final PipeCell[][] pipeCells;
+
+    /**
+     * the shown state of each cell, at the index row * columns + column, see {@link #toState}
+     */
+    private final byte[] states;
+
+    /**
+     * the clip of the view, so that the cells at the edge do not reach out of it
+     */
+    private final Rectangle clip = new Rectangle();
+
+    /**
+     * the sprite atlas for the size of the cells, or null before the first layout, when all cells are hidden
+     */
+    private SpriteAtlas atlas;
+
+    /**
+     * the size of a cell in pixels
+     */
+    private double cellSize;
+
+    /**
+     * the upper left corner of the play field in the view
+     */
+    private double originX, originY;
+
+    /**
+     * the last column and row of the cells placed in the last layout pass, the cells from column and row 0 on are placed
+     */
+    private int lastColumn = -1, lastRow = -1;
+
+    /**
+     * The constructor. Creates a PipeCell for each cell of the play field, which is hidden until it is placed.
+     * The image views of each cell are created here once, displaying a pipe only changes them.
+     *
+     * @param columns The size(columns) of the play field
+     * @param rows The size(rows) of the play field
+     */
+    public GridBoard(int columns, int rows) {
+        super(columns, rows);
+        states = new byte[columns * rows];
+        Arrays.fill(states, EMPTY);
+        setClip(clip);
+
+        pipeCells = new PipeCell[columns][rows];
+        for (int i = 0;i < columns;i++){
+            for(int j = 0;j < rows;j++) {
+                pipeCells[i][j] = new PipeCell();
+                pipeCells[i][j].setManaged(false);
+                pipeCells[i][j].setVisible(false);
+                getChildren().add(pipeCells[i][j]);
+            }
+        }
+
+        setOnMousePressed(event -> pressPipe(getPosition(event.getX(), event.getY()), event));
+        setOnDragDropped(event -> dropPipe(getPosition(event.getX(), event.getY()), event));
+        setOnDragOver(this::dragPipeOver);
+    }
+
+    @Override
+    public void showPipe(int column, int row, int pipeNumber, boolean isFilled, boolean isSource) {
+        byte state = toState(pipeNumber, isFilled, isSource);
+        states[row * columns + column] = state;
+        if (pipeCells[column][row].isVisible()) show(column, row, state);
+    }
+
+    /**
+     * to compute the size of the cells, to place the cells in the view and to hide the cells which left it.
+     * The sprite atlas is only rendered again when the size of the cells changes;
+     * hidden cells get their sprites when they are placed again.
+     */
+    @Override
+    protected void layoutChildren() {
+        double width = getWidth();
+        double height = getHeight();
+        clip.setWidth(width);
+        clip.setHeight(height);
+
+        cellSize = Math.max(MIN_CELL_SIZE, Math.floor(Math.min(width / columns, height / rows)));
+        originX = Math.max(0, Math.floor((width - columns * cellSize) / 2));
+        originY = Math.max(0, Math.floor((height - rows * cellSize) / 2));
+
+        SpriteAtlas sized = SpriteAtlas.getInstance(cellSize);
+        boolean isResized = (sized != atlas);
+        atlas = sized;
+
+        int newLastColumn = Math.min(columns, (int) Math.ceil((width - originX) / cellSize)) - 1;
+        int newLastRow = Math.min(rows, (int) Math.ceil((height - originY) / cellSize)) - 1;
+        for (int i = 0; i <= lastColumn; i++) {
+            for (int j = 0; j <= lastRow; j++) {
+                if ((i > newLastColumn) || (j > newLastRow)) pipeCells[i][j].setVisible(false);
+            }
+        }
+        for (int i = 0; i <= newLastColumn; i++) {
+            for (int j = 0; j <= newLastRow; j++) {
+                pipeCells[i][j].resizeRelocate(originX + i * cellSize, originY + j * cellSize, cellSize, cellSize);
+                if (isResized || !pipeCells[i][j].isVisible()) show(i, j, states[j * columns + i]);
+                pipeCells[i][j].setVisible(true);
+            }
+        }
+        lastColumn = newLastColumn;
+        lastRow = newLastRow;
+    }
+
+    /**
+     * to show the state of a cell with the sprite atlas
+     *
+     * @param column the column of the cell
+     * @param row the row of the cell
+     * @param state the state of the cell
+     */
+    private void show(int column, int row, byte state) {
+        if (state != EMPTY) pipeCells[column][row].show(atlas, state >> 1, (state & 1) != 0);
+    }
+
+    /**
+     * to get the position of the cell at a point of the view
+     *
+     * @param x the x coordinate in the view
+     * @param y the y coordinate in the view
+     * @return the position of the cell, or null if the point is not on a cell
+     */
+    private Position getPosition(double x, double y) {
+        Position toReturn = null;
+        if (cellSize > 0) {
+            int column = (int) Math.floor((x - originX) / cellSize);
+            int row = (int) Math.floor((y - originY) / cellSize);
+            if ((column >= 0) && (column < columns) && (row >= 0) && (row < rows))
+                toReturn = new Position(column, row);
+        }
+        return toReturn;
+    }
+}
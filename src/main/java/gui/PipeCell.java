@@ -0,0 +1,82 @@
+package gui;
+
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.StackPane;
+
+/**
+ * A cell of the play field, which shows the sprite of a pipe and, on the source, the wheel above it.
+ * The image views are created once together with the cell,
+ * displaying a pipe only changes the sprite and the visibility when they are different.
+ * The image views get the size of the cell in its layout pass, there are no bindings to the size of the cell.
+ *
+ * @author LiChieh Chou
+ */
+public class PipeCell extends StackPane {
+    /**
+     * the image view of the pipe
+     */
+    private final ImageView pipeView;
+
+    /**
+     * the image view of the wheel, only visible on the source
+     */
+    private final ImageView sourceView;
+
+    /**
+     * The constructor. Creates the image views.
+     */
+    public PipeCell(){
+        pipeView = createImageView();
+        sourceView = createImageView();
+        sourceView.setVisible(false);
+        getChildren().addAll(pipeView, sourceView);
+    }
+
+    /**
+     * to show a pipe in the cell
+     *
+     * @param atlas the sprite atlas for the size of the cell
+     * @param sprite the index of the sprite of the pipe in the atlas, see {@link SpriteAtlas#getSprite(int, boolean)}
+     * @param isSource true, to show the wheel above the pipe; false, otherwise
+     */
+    public void show(SpriteAtlas atlas, int sprite, boolean isSource){
+        if (pipeView.getImage() != atlas.getImage()) {
+            pipeView.setImage(atlas.getImage());
+            sourceView.setImage(atlas.getImage());
+            sourceView.setViewport(atlas.getViewport(SpriteAtlas.getSourceSprite()));
+        }
+        if (pipeView.getViewport() != atlas.getViewport(sprite)) pipeView.setViewport(atlas.getViewport(sprite));
+        if (sourceView.isVisible() != isSource) sourceView.setVisible(isSource);
+    }
+
+    /**
+     * to fit the image views into the cell and to center them
+     */
+    @Override
+    protected void layoutChildren(){
+        fitToCell(pipeView);
+        fitToCell(sourceView);
+        super.layoutChildren();
+    }
+
+    /**
+     * to set the fit size of an image view to the size of the cell, if it changed
+     *
+     * @param imageView the image view
+     */
+    private void fitToCell(ImageView imageView){
+        if (imageView.getFitWidth() != getWidth()) imageView.setFitWidth(getWidth());
+        if (imageView.getFitHeight() != getHeight()) imageView.setFitHeight(getHeight());
+    }
+
+    /**
+     * to create an image view which keeps the ratio of the sprite
+     *
+     * @return the image view
+     */
+    private ImageView createImageView(){
+        ImageView toReturn = new ImageView();
+        toReturn.setPreserveRatio(true);
+        return toReturn;
+    }
+}
@@ -1,7 +1,13 @@
 package gui;
 
+import javafx.scene.image.Image;
+
 /**
  * The PipeImage Enum stores the file paths of the pipe images
+ * and keeps the decoded images, which are shared by all cells.
+ * The images are decoded at the size they are shown in, rounded up to a size bucket,
+ * so that small cells do not keep the full-resolution images in texture memory.
+ * An image is decoded for a bucket when it is needed first at a size in that bucket.
  */
 public enum PipeImage {
     WALL("wall","jpg"),
@@ -11,9 +17,25 @@ public enum PipeImage {
     T_PIPE("tPipe","jpg"),
     SOURCE("wheel","png");
 
+    /**
+     * the sizes in pixels to which the images are decoded; images for larger sizes are decoded at full resolution
+     */
+    private static final int[] SIZE_BUCKETS = {16, 24, 32, 48, 64, 96, 128, 192};
+
+    /**
+     * the size of the cells of the first play field in the default window, at which the images are preloaded
+     */
+    private static final int PRELOAD_SIZE = 128;
+
     private final String fileName;
     private final String fileType;
 
+    /**
+     * the decoded images, not filled at [0] and filled at [1], for each size bucket and at full resolution at the end,
+     * decoded when they are needed first; null until the first image is decoded
+     */
+    private Image[][] images;
+
     PipeImage(String fileName, String fileType){
         this.fileName = fileName;
         this.fileType = fileType;
@@ -37,12 +59,105 @@ public enum PipeImage {
     public String getFilePath(boolean isFilled) {
         StringBuilder filePath = new StringBuilder().append("/gui/pipes/").append(fileName);
 
-        if(isFilled) {
-            if ((this != PipeImage.WALL) && (this != PipeImage.SOURCE))
-                filePath.append("_filled");
-        }
+        if(isFilled && hasFilledImage()) filePath.append("_filled");
         filePath.append(".").append(fileType);
 
         return filePath.toString();
     }
+
+    /**
+     * to get the decoded pipe image(not filled) at full resolution
+     *
+     * @return the image
+     */
+    public Image getImage(){
+        return getImage(false);
+    }
+
+    /**
+     * to get the decoded pipe image at full resolution.
+     * Each image file is decoded only once, all cells share the same image.
+     *
+     * @param isFilled true, to get the filled image; false, not filled image
+     * @return the image
+     */
+    public Image getImage(boolean isFilled){
+        return getImage(isFilled, Double.MAX_VALUE);
+    }
+
+    /**
+     * to get the pipe image decoded for a size.
+     * The image is at least as large as the size, rounded up to the next size bucket,
+     * and is decoded only once for each bucket, all cells of about the same size share the same image.
+     *
+     * @param isFilled true, to get the filled image; false, not filled image
+     * @param size the width and height in pixels at which the image is shown
+     * @return the image, which keeps the ratio of the image file
+     */
+    public synchronized Image getImage(boolean isFilled, double size){
+        int i = (isFilled && hasFilledImage()) ? 1 : 0;
+        int bucket = toBucket(size);
+        if (images == null) images = new Image[2][SIZE_BUCKETS.length + 1];
+        if (images[i][bucket] == null) {
+            if (bucket == SIZE_BUCKETS.length) images[i][bucket] = new Image(getFilePath(isFilled));
+            else images[i][bucket] = new Image(getFilePath(isFilled), SIZE_BUCKETS[bucket], SIZE_BUCKETS[bucket], true, true);
+        }
+        return images[i][bucket];
+    }
+
+    /**
+     * to get the texture memory of all decoded pipe images
+     *
+     * @return the memory in bytes, 4 bytes for each pixel
+     */
+    public static long getTextureMemory(){
+        long toReturn = 0;
+        for (PipeImage pipeImage : values()) {
+            synchronized (pipeImage) {
+                if (pipeImage.images != null) {
+                    for (Image[] decoded : pipeImage.images) {
+                        for (Image image : decoded) {
+                            if (image != null) toReturn += 4L * (long) image.getWidth() * (long) image.getHeight();
+                        }
+                    }
+                }
+            }
+        }
+        return toReturn;
+    }
+
+    /**
+     * to get the size bucket for a size
+     *
+     * @param size the width and height in pixels
+     * @return the index of the smallest bucket which is not smaller than the size, or the number of buckets for full resolution
+     */
+    private static int toBucket(double size){
+        int toReturn = 0;
+        while ((toReturn < SIZE_BUCKETS.length) && (SIZE_BUCKETS[toReturn] < size)) toReturn++;
+        return toReturn;
+    }
+
+    /**
+     * to decode all pipe images on a background thread, so that they are ready when the first play field is shown
+     */
+    public static void preload(){
+        Thread thread = new Thread(() -> {
+            for (PipeImage pipeImage : values()) {
+                pipeImage.getImage(false, PRELOAD_SIZE);
+                pipeImage.getImage(true, PRELOAD_SIZE);
+            }
+        }, "pipe-images");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * to check if there is a filled image, the wall and the source look the same when filled
+     *
+     * @return true, if there is a filled image; false, otherwise
+     */
+    private boolean hasFilledImage(){
+        return (this != PipeImage.WALL) && (this != PipeImage.SOURCE);
+    }
 }
@@ -4,6 +4,7 @@ import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
 import javafx.scene.control.CheckBox;
+import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.Slider;
 import javafx.scene.input.KeyEvent;
@@ -48,6 +49,12 @@ public class SettingPageController {
     @FXML
     private CheckBox omClickBox;
 
+    /**
+     * the ChoiceBox to select the way to show the play field
+     */
+    @FXML
+    private ChoiceBox<BoardRenderer> rendererBox;
+
     /**
      * the Label beside the colSlider to show the "Game Restart Required" message if the value is changed
      */
@@ -130,9 +137,11 @@ public class SettingPageController {
      * @param percentageOfWall the maximum percentage of inserted wall pieces
      * @param gameSpeed the animation speed
      * @param overflowMode The Overflow mode
+     * @param renderer the way to show the play field
      */
     public void setReferenceToController(UserInterfaceController usrController,
-                                         int columns, int rows, int percentageOfWall, int gameSpeed, boolean overflowMode){
+                                         int columns, int rows, int percentageOfWall, int gameSpeed, boolean overflowMode,
+                                         BoardRenderer renderer){
         this.usrController = usrController;
         this.columns = columns;
         this.rows = rows;
@@ -144,6 +153,8 @@ public class SettingPageController {
         wallSlider.setValue(percentageOfWall);
         speedSlider.setValue(gameSpeed);
         omClickBox.setSelected(overflowMode);
+        rendererBox.getItems().setAll(BoardRenderer.values());
+        rendererBox.setValue(renderer);
         labelPercentageVal.setText((int) wallSlider.getValue() + "%");
     }
 
@@ -229,7 +240,7 @@ public class SettingPageController {
             percentageOfWall = (int)wallSlider.getValue();
             gameSpeed = (int)speedSlider.getValue();
             overflowMode = omClickBox.isSelected();
-            usrController.setSettings(columns, rows, percentageOfWall, gameSpeed, overflowMode);
+            usrController.setSettings(columns, rows, percentageOfWall, gameSpeed, overflowMode, rendererBox.getValue());
             if (Objects.equals(saveBtn.getText(), "Save & Restart the Game"))
                 usrController.createNewGame();
         }
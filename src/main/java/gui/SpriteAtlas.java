@@ -0,0 +1,291 @@
+package gui;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import logic.Pipe;
+import logic.PipeType;
+import logic.Rotation;
+
+/**
+ * The sprite atlas, a single image which holds a sprite for each of the 16 pipe numbers (see {@link Pipe#getPipeNumber()}),
+ * filled and not filled, and the wheel of the source.
+ * The sprites are already rotated and scaled to the size of the cells, so they are drawn as they are,
+ * without a transformation per cell and without resampling when they are shown.
+ * The atlas is rendered for one cell size and rendered again only when the size of the cells changes,
+ * from the pipe images decoded for about that size.
+ *
+ * @author LiChieh Chou
+ */
+public final class SpriteAtlas {
+    /**
+     * the number of pipe numbers
+     */
+    private static final int PIPE_NUMBERS = 16;
+
+    /**
+     * the index of the sprite of the wheel
+     */
+    private static final int SOURCE_SPRITE = PIPE_NUMBERS * 2;
+
+    /**
+     * the number of sprites in a row of the atlas
+     */
+    private static final int SPRITES_PER_ROW = 8;
+
+    /**
+     * the largest size of the sprites, larger cells scale the sprites up, as the pipe images are not larger
+     */
+    public static final int MAX_SPRITE_SIZE = 240;
+
+    /**
+     * the atlas for the last requested cell size
+     */
+    private static SpriteAtlas instance;
+
+    /**
+     * the size of the sprites in pixels
+     */
+    private final int size;
+
+    /**
+     * the image which holds all sprites
+     */
+    private final Image image;
+
+    /**
+     * the bounds of each sprite in the atlas, at the index of {@link #getSprite(int, boolean)}
+     */
+    private final Rectangle2D[] viewports = new Rectangle2D[SOURCE_SPRITE + 1];
+
+    /**
+     * Constructor for the atlas, renders the images of PipeImage rotated and scaled into one image
+     *
+     * @param size the size of the sprites in pixels
+     */
+    private SpriteAtlas(int size) {
+        this.size = size;
+        WritableImage atlas = new WritableImage(SPRITES_PER_ROW * size,
+                ((SOURCE_SPRITE + SPRITES_PER_ROW) / SPRITES_PER_ROW) * size);
+
+        for (boolean isFilled : new boolean[]{false, true}) {
+            int[][] scaled = new int[PipeImage.values().length][];
+            for (int pipeNumber = 0; pipeNumber < PIPE_NUMBERS; pipeNumber++) {
+                Pipe pipe = toPipe(pipeNumber);
+                PipeImage pipeImage = toPipeImage(pipe.getPipeType());
+                if (scaled[pipeImage.ordinal()] == null)
+                    scaled[pipeImage.ordinal()] = scale(pipeImage.getImage(isFilled, size), size);
+                int[] pixels = rotate(scaled[pipeImage.ordinal()], size, pipe.getRotation().getValue() / 90);
+                writeSprite(atlas, getSprite(pipeNumber, isFilled), pixels);
+            }
+        }
+        writeSprite(atlas, SOURCE_SPRITE, scale(PipeImage.SOURCE.getImage(false, size), size));
+        image = atlas;
+    }
+
+    /**
+     * to get the atlas for a size of the cells.
+     * The atlas is kept and rendered again only when it is requested for another size.
+     *
+     * @param cellSize the size of the cells in pixels
+     * @return the atlas, with sprites of the cell size, but not larger than {@link #MAX_SPRITE_SIZE}
+     */
+    public static synchronized SpriteAtlas getInstance(double cellSize) {
+        int size = (int) Math.max(1, Math.min(MAX_SPRITE_SIZE, Math.round(cellSize)));
+        if ((instance == null) || (instance.size != size)) instance = new SpriteAtlas(size);
+        return instance;
+    }
+
+    /**
+     * to get the size of the sprites
+     *
+     * @return the size in pixels
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * to get the image which holds all sprites
+     *
+     * @return the image of the atlas
+     */
+    public Image getImage() {
+        return image;
+    }
+
+    /**
+     * to get the index of the sprite of a pipe
+     *
+     * @param pipeNumber the pipe number, see {@link Pipe#getPipeNumber()}
+     * @param isFilled true, for the filled pipe; false, for the not filled pipe
+     * @return the index of the sprite
+     */
+    public static int getSprite(int pipeNumber, boolean isFilled) {
+        return pipeNumber * 2 + (isFilled ? 1 : 0);
+    }
+
+    /**
+     * to get the index of the sprite of the wheel
+     *
+     * @return the index of the sprite
+     */
+    public static int getSourceSprite() {
+        return SOURCE_SPRITE;
+    }
+
+    /**
+     * to get the bounds of a sprite in the atlas, e.g. for the viewport of an ImageView
+     *
+     * @param sprite the index of the sprite
+     * @return the bounds, the same object for each call
+     */
+    public Rectangle2D getViewport(int sprite) {
+        return viewports[sprite];
+    }
+
+    /**
+     * to write a sprite into the atlas
+     *
+     * @param atlas the image of the atlas
+     * @param sprite the index of the sprite
+     * @param pixels the pixels of the sprite
+     */
+    private void writeSprite(WritableImage atlas, int sprite, int[] pixels) {
+        int x = (sprite % SPRITES_PER_ROW) * size;
+        int y = (sprite / SPRITES_PER_ROW) * size;
+        atlas.getPixelWriter().setPixels(x, y, size, size, PixelFormat.getIntArgbInstance(), pixels, 0, size);
+        viewports[sprite] = new Rectangle2D(x, y, size, size);
+    }
+
+    /**
+     * to get a pipe with a pipe number
+     *
+     * @param pipeNumber the pipe number
+     * @return the first pipe found with this number, or a wall if no pipe has it
+     */
+    private static Pipe toPipe(int pipeNumber) {
+        Pipe toReturn = new Pipe();
+        for (PipeType pipeType : PipeType.values()) {
+            for (Rotation rotation : Rotation.values()) {
+                Pipe pipe = new Pipe(pipeType, rotation);
+                if ((toReturn.getPipeNumber() != pipeNumber) && (pipe.getPipeNumber() == pipeNumber)) toReturn = pipe;
+            }
+        }
+        return toReturn;
+    }
+
+    /**
+     * to get the image of a pipe type
+     *
+     * @param pipeType the pipe type
+     * @return the image
+     */
+    private static PipeImage toPipeImage(PipeType pipeType) {
+        return switch (pipeType) {
+            case END_PIPE ->        PipeImage.END_PIPE;
+            case CURVE_PIPE ->      PipeImage.CURVE_PIPE;
+            case STRAIGHT_PIPE ->   PipeImage.STRAIGHT_PIPE;
+            case T_PIPE ->          PipeImage.T_PIPE;
+            default ->              PipeImage.WALL;
+        };
+    }
+
+    /**
+     * to scale an image to a square sprite. Each pixel of the sprite is the average of the pixels of the image it covers,
+     * weighted by how much of them it covers, so that the sprite stays sharp.
+     *
+     * @param source the image
+     * @param size the size of the sprite in pixels
+     * @return the pixels of the sprite, in ARGB and row by row
+     */
+    private static int[] scale(Image source, int size) {
+        int width = (int) source.getWidth();
+        int height = (int) source.getHeight();
+        int[] pixels = new int[width * height];
+        source.getPixelReader().getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+
+        double[] premultiplied = new double[pixels.length * 4];
+        for (int i = 0; i < pixels.length; i++) {
+            double alpha = pixels[i] >>> 24;
+            premultiplied[i * 4] = alpha;
+            premultiplied[i * 4 + 1] = ((pixels[i] >> 16) & 0xFF) * alpha;
+            premultiplied[i * 4 + 2] = ((pixels[i] >> 8) & 0xFF) * alpha;
+            premultiplied[i * 4 + 3] = (pixels[i] & 0xFF) * alpha;
+        }
+
+        double[] columns = new double[size * height * 4];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < size; x++) {
+                addCovered(premultiplied, y * width * 4, 4, width, x, size, columns, (y * size + x) * 4);
+            }
+        }
+        double[] rows = new double[size * size * 4];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                addCovered(columns, x * 4, size * 4, height, y, size, rows, (y * size + x) * 4);
+            }
+        }
+
+        int[] toReturn = new int[size * size];
+        for (int i = 0; i < toReturn.length; i++) {
+            double alpha = rows[i * 4];
+            int argb = Math.min(255, (int) Math.round(alpha)) << 24;
+            for (int channel = 1; (channel < 4) && (alpha > 0); channel++) {
+                argb |= Math.min(255, (int) Math.round(rows[i * 4 + channel] / alpha)) << (24 - channel * 8);
+            }
+            toReturn[i] = argb;
+        }
+        return toReturn;
+    }
+
+    /**
+     * to add up the source pixels along a line which are covered by one target pixel, weighted by their coverage
+     *
+     * @param source the alpha and the alpha-weighted red, green and blue of the source pixels
+     * @param start the index of the first pixel of the line in the source
+     * @param step the distance between two pixels of the line in the source
+     * @param length the number of pixels of the line
+     * @param target the index of the target pixel in the line
+     * @param targetLength the number of target pixels of the line
+     * @param sums the sums of the target pixels, in the same form as the source
+     * @param offset the index of the target pixel in sums
+     */
+    private static void addCovered(double[] source, int start, int step, int length, int target, int targetLength,
+                                   double[] sums, int offset) {
+        double scale = (double) length / targetLength;
+        double from = target * scale;
+        double to = from + scale;
+        for (int i = (int) Math.floor(from); (i < to) && (i < length); i++) {
+            double weight = (Math.min(to, i + 1) - Math.max(from, i)) / scale;
+            for (int channel = 0; channel < 4; channel++) {
+                sums[offset + channel] += source[start + i * step + channel] * weight;
+            }
+        }
+    }
+
+    /**
+     * to rotate a square sprite clockwise
+     *
+     * @param pixels the pixels of the sprite
+     * @param size the size of the sprite
+     * @param quarterTurns the number of quarter turns
+     * @return the pixels of the rotated sprite
+     */
+    private static int[] rotate(int[] pixels, int size, int quarterTurns) {
+        int[] toReturn = new int[pixels.length];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int target = switch (Math.floorMod(quarterTurns, 4)) {
+                    case 1 ->   x * size + (size - 1 - y);
+                    case 2 ->   (size - 1 - y) * size + (size - 1 - x);
+                    case 3 ->   (size - 1 - x) * size + y;
+                    default ->  y * size + x;
+                };
+                toReturn[target] = pixels[y * size + x];
+            }
+        }
+        return toReturn;
+    }
+}
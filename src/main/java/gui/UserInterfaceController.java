@@ -3,18 +3,16 @@ package gui;
 import javafx.animation.Animation;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
-import javafx.beans.binding.Bindings;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
-import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.*;
 import javafx.scene.layout.*;
@@ -27,6 +25,9 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ResourceBundle;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Main class for the user interface.
@@ -42,7 +43,7 @@ public class UserInterfaceController implements Initializable {
     private BorderPane borderPane;
 
     /**
-     * the Pane in the center of the borderPane, which contains a GridPane for the pipe images
+     * the Pane in the center of the borderPane, which contains the view of the play field
      */
     @FXML
     private Pane centerPane;
@@ -71,6 +72,18 @@ public class UserInterfaceController implements Initializable {
     @FXML
     private MenuItem menuItemNewGame;
 
+    /**
+     * The menu item "Undo"
+     */
+    @FXML
+    private MenuItem menuItemUndo;
+
+    /**
+     * The menu item "Redo"
+     */
+    @FXML
+    private MenuItem menuItemRedo;
+
     /**
      * The menu item "Editor"
      */
@@ -119,11 +132,36 @@ public class UserInterfaceController implements Initializable {
      */
     private boolean overflowMode;
 
+    /**
+     * the way to show the play field
+     */
+    private BoardRenderer renderer;
+
     /**
      * the timeline for animation
      */
     private Timeline timeline;
 
+    /**
+     * the number of puzzles kept ready for a new game
+     */
+    private static final int PUZZLE_POOL_CAPACITY = 3;
+
+    /**
+     * the puzzles which are generated in the background for the current settings
+     */
+    private final PuzzlePool puzzlePool = new PuzzlePool(PUZZLE_POOL_CAPACITY);
+
+    /**
+     * the file of the journal, from which the last game can be restored
+     */
+    private static final String JOURNAL_FILE = "/game_saves/session" + MoveJournal.FILE_EXTENSION;
+
+    /**
+     * the journal of the current game, or null if it can not be written
+     */
+    private MoveJournal journal;
+
     /**
      * To set the settings of the game
      * Which the settings including the columns, rows, percentage of the wall pieces, game speed and overflow mode
@@ -133,13 +171,22 @@ public class UserInterfaceController implements Initializable {
      * @param percentageOfWall the maximum percentage of inserted wall pieces
      * @param gameSpeed the animation speed
      * @param overflowMode The Overflow mode
-     */
-    public void setSettings(int columns, int rows, int percentageOfWall, int gameSpeed, boolean overflowMode){
+     * @param renderer the way to show the play field
+     */
+    public void setSettings(int columns, int rows, int percentageOfWall, int gameSpeed, boolean overflowMode,
+                            BoardRenderer renderer){
+        if ((game != null) && (renderer != this.renderer)) {
+            this.renderer = renderer;
+            game.getGui().resize(game.getPlayField().getColumns(), game.getPlayField().getRows());
+            game.displayPlayField();
+        }
+        this.renderer = renderer;
         this.columns = columns;
         this.rows = rows;
         this.percentageOfWall = percentageOfWall;
         this.gameSpeed = gameSpeed;
         this.overflowMode = overflowMode;
+        puzzlePool.prepare(columns, rows, percentageOfWall, overflowMode);
 
         if(editorMode){
             game.setOverflowMode(overflowMode);
@@ -171,16 +218,100 @@ public class UserInterfaceController implements Initializable {
      */
     @Override
     public void initialize(URL location, ResourceBundle resources) {
+        PipeImage.preload();
         menuItemSave.setDisable(true);
         columns = 5;
         rows = 5;
         percentageOfWall = 20;
         gameSpeed = 11;
         overflowMode = false;
+        renderer = BoardRenderer.AUTOMATIC;
         startBtn.prefHeightProperty().bind(centerPane.heightProperty());
         startBtn.prefWidthProperty().bind(centerPane.widthProperty());
         createTimeLine();
         setTimeLineRate(gameSpeed);
+        puzzlePool.prepare(columns, rows, percentageOfWall, overflowMode);
+        Platform.runLater(this::openJournal);
+    }
+
+    /**
+     * To open the journal, and to offer to restore the last game if the journal holds one
+     * which the player changed and did not finish. If the player does not want it, the journal is emptied.
+     */
+    private void openJournal() {
+        File journalFile = new File(System.getProperty("user.dir") + JOURNAL_FILE);
+        journalFile.getParentFile().mkdirs();
+
+        MoveJournal.Session session = null;
+        if (journalFile.exists()) {
+            try {
+                session = MoveJournal.replay(journalFile.toPath());
+            } catch (IOException e) {
+                // a broken journal can not be restored and is overwritten by the next game
+            }
+        }
+
+        try {
+            journal = new MoveJournal(journalFile.toPath());
+        } catch (IOException e) {
+            journal = null;
+            System.out.println("The journal can not be opened.");
+            e.printStackTrace();
+        }
+
+        boolean isUnfinished = (session != null) && (session.getRecordCount() > 0)
+                && (session.isEditorMode() || !session.isSolved());
+        if (isUnfinished) {
+            String msg = "The last " + (session.isEditorMode() ? "play field in the editor" : "game") + " was not finished.\n\n" +
+                         "Do you want to restore it?";
+            Alert alert = new Alert(Alert.AlertType.CONFIRMATION, msg, ButtonType.YES, ButtonType.NO);
+            alert.setTitle("Restore");
+            if (alert.showAndWait().orElse(ButtonType.NO) == ButtonType.YES) restoreSession(session);
+            else clearJournal();
+        }
+    }
+
+    /**
+     * To go on with a game restored from the journal
+     *
+     * @param session the restored game
+     */
+    private void restoreSession(MoveJournal.Session session) {
+        startBtn.setVisible(false);
+        menuItemSave.setDisable(false);
+        setSize(session.getPlayField().getColumns(), session.getPlayField().getRows());
+        BoardView board = createPlayField();
+
+        game = new Logic(new JavaFXGUI(this, board), session.getPlayField(), session.getTurns());
+        game.setJournal(journal);
+
+        if (session.isEditorMode()) {
+            onEditorBtnClick();
+        } else {
+            setTimeLineRate(gameSpeed);
+            playTimeLine();
+        }
+    }
+
+    /**
+     * To empty the journal, so that the current game is not offered to be restored, e.g. when it is won
+     */
+    protected void clearJournal() {
+        if (journal != null) journal.clear();
+    }
+
+    /**
+     * To stop the background work and to write the rest of the journal, when the program is closed
+     */
+    public void shutdown() {
+        puzzlePool.shutdown();
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
     }
 
     /**
@@ -195,50 +326,35 @@ public class UserInterfaceController implements Initializable {
     }
 
     /**
-     * To create a new game
+     * To create a new game with a puzzle from the pool, which is ready at once in most cases
      */
     protected void createNewGame(){
-        StackPane[][] pipeStackPanes = createPlayField();
+        BoardView board = createPlayField();
 
-        game = new Logic(new JavaFXGUI(this, pipeStackPanes), columns, rows, percentageOfWall, overflowMode);
+        PlayField puzzle = puzzlePool.take(columns, rows, percentageOfWall, overflowMode);
+        game = new Logic(new JavaFXGUI(this, board), puzzle);
+        game.setJournal(journal);
 
         setTimeLineRate(gameSpeed);
         playTimeLine();
     }
 
     /**
-     Creates the play field by creating a GridPane and a two-dimensional array of StackPanes.
+     Creates the view of the play field, in the way chosen in the settings.
+     The view passes presses and drops on its cells on to the handles of this controller.
 
-     @return a two-dimensional array of StackPanes representing the positions in the play field
+     @return the view of the play field
      */
-    protected StackPane[][] createPlayField(){
-        StackPane[][] pipeStackPanes;
-
-        GridPane gridPane = new GridPane();
-        gridPane.setAlignment(Pos.CENTER);
-        gridPane.prefHeightProperty().bind(centerPane.heightProperty());
-        gridPane.prefWidthProperty().bind(centerPane.widthProperty());
+    protected BoardView createPlayField(){
+        BoardView board = renderer.createBoard(columns, rows);
+        board.prefHeightProperty().bind(centerPane.heightProperty());
+        board.prefWidthProperty().bind(centerPane.widthProperty());
+        board.setOnPipePressed(this::onPipePress);
+        board.setOnPipeDropped(this::onPipeDrop);
 
         centerPane.getChildren().clear();
-        centerPane.getChildren().add(gridPane);
-
-        pipeStackPanes = new StackPane[columns][rows];
-        for (int i = 0;i < columns;i++){
-            for(int j = 0;j < rows;j++) {
-                pipeStackPanes[i][j] = new StackPane();
-                pipeStackPanes[i][j].setMinSize(30,30);
-                pipeStackPanes[i][j].prefWidthProperty().bind(Bindings.min(gridPane.widthProperty().divide(columns),
-                        gridPane.heightProperty().divide(rows)));
-                pipeStackPanes[i][j].prefHeightProperty().bind(Bindings.min(gridPane.widthProperty().divide(columns),
-                        gridPane.heightProperty().divide(rows)));
-                pipeStackPanes[i][j].setOnMousePressed(this::onPipePress);
-                pipeStackPanes[i][j].setOnDragDropped(this::onPipeDrop);
-                pipeStackPanes[i][j].setOnDragOver(this::onPipeDragOver);
-
-                gridPane.add(pipeStackPanes[i][j],i,j);
-            }
-        }
-        return pipeStackPanes;
+        centerPane.getChildren().add(board);
+        return board;
     }
 
     /**
@@ -252,7 +368,9 @@ public class UserInterfaceController implements Initializable {
             FileChooser fileChooser = new FileChooser();
             FileChooser.ExtensionFilter extFilter = new FileChooser.ExtensionFilter(
                                                             "Json files (*.json)", "*.json");
-            fileChooser.getExtensionFilters().add(extFilter);
+            FileChooser.ExtensionFilter binaryFilter = new FileChooser.ExtensionFilter(
+                                                            "Binary files (*.fpb)", "*.fpb");
+            fileChooser.getExtensionFilters().addAll(extFilter, binaryFilter);
 
             File gameSaveDir = new File(System.getProperty("user.dir") +"/game_saves");
             if(!gameSaveDir.exists()){
@@ -263,7 +381,8 @@ public class UserInterfaceController implements Initializable {
             File file = fileChooser.showSaveDialog(stage);
 
             if (file != null) {
-                if(game != null) game.saveGame(file);
+                runFileTask("Saving " + file.getName(), listener -> game.saveGameAsync(file, Platform::runLater, listener),
+                        () -> {}, this::showFileError);
             }
         }
 
@@ -280,6 +399,8 @@ public class UserInterfaceController implements Initializable {
 
         fileChooser.getExtensionFilters().addAll(
                 new FileChooser.ExtensionFilter("Json files (*.json)", "*.json"),
+                new FileChooser.ExtensionFilter("Binary files (*.fpb)", "*.fpb"),
+                new FileChooser.ExtensionFilter("Puzzle packs (*.fpk)", "*" + PuzzlePack.FILE_EXTENSION),
                 new FileChooser.ExtensionFilter("Other files (*.*)", "*.*")
         );
 
@@ -296,22 +417,154 @@ public class UserInterfaceController implements Initializable {
             if (game == null) createNewGame();
 
             try{
-                game.loadGame(file);
-                if(editorMode)
-                    game.fillAllConnectedPipes();
-            } catch(Exception e){
-                if(!editorMode) {
-                    game = null;
-                    centerPane.getChildren().clear();
-                    centerPane.getChildren().add(startBtn);
-                    startBtn.setVisible(true);
-                    menuItemSave.setDisable(true);
+                String title = "Loading " + file.getName();
+                if (PuzzlePack.isPack(file.toPath())) {
+                    Integer level = askForLevel(file);
+                    if (level != null)
+                        runFileTask(title, listener -> game.loadLevelAsync(file, level, Platform::runLater, listener),
+                                this::onGameLoaded, this::onLoadFailed);
+                } else {
+                    runFileTask(title, listener -> game.loadGameAsync(file, Platform::runLater, listener),
+                            this::onGameLoaded, this::onLoadFailed);
                 }
-                String msg = e.getMessage();
-                Alert alert = new Alert(Alert.AlertType.ERROR, msg, ButtonType.OK);
-                alert.showAndWait();
+            } catch(Exception e){
+                onLoadFailed(e);
             }
-            menuItemSave.setDisable(false);
+        }
+    }
+
+    /**
+     * Called on the gui thread when a loaded play field is displayed
+     */
+    private void onGameLoaded() {
+        if(editorMode)
+            game.fillAllConnectedPipes();
+        menuItemSave.setDisable(false);
+    }
+
+    /**
+     * Called on the gui thread when a file can not be loaded
+     *
+     * @param e the reason
+     */
+    private void onLoadFailed(Exception e) {
+        if(!editorMode) {
+            game = null;
+            centerPane.getChildren().clear();
+            centerPane.getChildren().add(startBtn);
+            startBtn.setVisible(true);
+            menuItemSave.setDisable(true);
+        }
+        showFileError(e);
+    }
+
+    /**
+     * to show why a file can not be saved or loaded
+     *
+     * @param e the reason
+     */
+    private void showFileError(Exception e) {
+        String msg = e.getMessage();
+        Alert alert = new Alert(Alert.AlertType.ERROR, msg, ButtonType.OK);
+        alert.showAndWait();
+    }
+
+    /**
+     * to save or load a file in the background, while a dialog shows the progress.
+     * The dialog is modal, so the game can not be changed until the task is finished or cancelled,
+     * but the gui is still drawn.
+     *
+     * @param title the title of the dialog
+     * @param start to start the task with the listener of the dialog
+     * @param onSucceeded called on the gui thread when the task succeeded
+     * @param onFailed called on the gui thread when the task failed
+     */
+    private void runFileTask(String title, Function<FileTaskListener, Future<?>> start,
+                             Runnable onSucceeded, Consumer<Exception> onFailed) {
+        ProgressBar progressBar = new ProgressBar(0);
+        progressBar.setPrefWidth(300);
+        Alert dialog = new Alert(Alert.AlertType.NONE, null, ButtonType.CANCEL);
+        dialog.setTitle(title);
+        dialog.setHeaderText(title);
+        dialog.getDialogPane().setContent(progressBar);
+
+        Future<?> task = start.apply(new FileTaskListener() {
+            @Override
+            public void onProgress(double progress) {
+                progressBar.setProgress(progress);
+            }
+
+            @Override
+            public void onSucceeded() {
+                dialog.close();
+                onSucceeded.run();
+            }
+
+            @Override
+            public void onFailed(Exception e) {
+                dialog.close();
+                onFailed.accept(e);
+            }
+
+            @Override
+            public void onCancelled() {
+                dialog.close();
+            }
+        });
+        dialog.setOnHidden(evt -> task.cancel(true));
+        dialog.show();
+    }
+
+    /**
+     * to ask the player which level of a puzzle pack should be loaded
+     *
+     * @param pack the puzzle pack
+     * @return the number of the level, starting at 0; null, if the player cancelled
+     * @throws Exception if the pack can not be read or the input is not a level of the pack
+     */
+    private Integer askForLevel(File pack) throws Exception {
+        int levelCount = PuzzlePack.getLevelCount(pack.toPath());
+
+        TextInputDialog dialog = new TextInputDialog("1");
+        dialog.setTitle("Load level");
+        dialog.setHeaderText("Pack " + pack.getName() + " has " + levelCount + " levels");
+        dialog.setContentText("Level #(1-" + levelCount + "):");
+
+        Integer toReturn = null;
+        String input = dialog.showAndWait().orElse(null);
+        if (input != null) {
+            try {
+                toReturn = Integer.parseInt(input.trim()) - 1;
+            } catch (NumberFormatException e) {
+                throw new Exception("\"" + input + "\" is not a level number");
+            }
+        }
+        return toReturn;
+    }
+
+    /**
+     * The handle of the menu item "Undo"
+     */
+    @FXML
+    void onUndoBtnClicked() {
+        if ((game != null) && game.undo()) onUndoneOrRedone();
+    }
+
+    /**
+     * The handle of the menu item "Redo"
+     */
+    @FXML
+    void onRedoBtnClicked() {
+        if ((game != null) && game.redo()) onUndoneOrRedone();
+    }
+
+    /**
+     * to update the play field and the menu after a change was undone or redone
+     */
+    private void onUndoneOrRedone() {
+        if(editorMode) {
+            game.fillAllConnectedPipes();
+            menuItemSave.setDisable(game.getPlayField().getSourcePos() == null);
         }
     }
 
@@ -322,6 +575,7 @@ public class UserInterfaceController implements Initializable {
     void onEditorBtnClick() {
         if(!editorMode){
             editorMode = true;
+            if (journal != null) journal.setEditorMode(true);
 
             if(game == null) {
                 createNewGame();
@@ -368,6 +622,7 @@ public class UserInterfaceController implements Initializable {
      */
     private void switchFromEditorToGameMode(){
         editorMode = false;
+        if (journal != null) journal.setEditorMode(false);
         borderPane.setLeft(null);
         borderPane.setRight(null);
         menuItemEditor.setText("Editor Mode");
@@ -393,16 +648,18 @@ public class UserInterfaceController implements Initializable {
             img.fitHeightProperty().bind(pane.heightProperty().divide(6).subtract(3));
             img.setPreserveRatio(true);
 
-            String path = switch (i) {
-                case 0 -> PipeImage.SOURCE.getFilePath();
-                case 1 -> PipeImage.WALL.getFilePath();
-                case 2 -> PipeImage.END_PIPE.getFilePath();
-                case 3 -> PipeImage.CURVE_PIPE.getFilePath();
-                case 4 -> PipeImage.STRAIGHT_PIPE.getFilePath();
-                case 5 -> PipeImage.T_PIPE.getFilePath();
+            PipeImage pipeImage = switch (i) {
+                case 0 -> PipeImage.SOURCE;
+                case 1 -> PipeImage.WALL;
+                case 2 -> PipeImage.END_PIPE;
+                case 3 -> PipeImage.CURVE_PIPE;
+                case 4 -> PipeImage.STRAIGHT_PIPE;
+                case 5 -> PipeImage.T_PIPE;
                 default -> throw new IllegalStateException("Unexpected value: " + i);
             };
-            img.setImage(new Image(path));
+            img.setImage(pipeImage.getImage(false, img.getFitHeight()));
+            img.fitHeightProperty().addListener((observable, oldHeight, newHeight) ->
+                    img.setImage(pipeImage.getImage(false, newHeight.doubleValue())));
 
             vBox.getChildren().add(stackPane);
         }
@@ -456,7 +713,8 @@ public class UserInterfaceController implements Initializable {
         root = loader.load();
 
         SettingPageController settingPageController = loader.getController();
-        settingPageController.setReferenceToController(this, columns, rows, percentageOfWall, gameSpeed, overflowMode);
+        settingPageController.setReferenceToController(this, columns, rows, percentageOfWall, gameSpeed, overflowMode,
+                renderer);
 
         stage.setScene(new Scene(root));
         stage.initModality(Modality.APPLICATION_MODAL);
@@ -529,19 +787,19 @@ public class UserInterfaceController implements Initializable {
 
     /**
      * The handle of Clicking the pipes
-     * in which to send the column and row's index to Logic
+     * in which to send the position to Logic
+     *
+     * @param pos the position of the clicked pipe
+     * @param button the pressed mouse button
      */
-    @FXML
-    void onPipePress(MouseEvent event) {
-        int column = GridPane.getColumnIndex((Node) event.getSource());
-        int row = GridPane.getRowIndex((Node) event.getSource());
+    void onPipePress(Position pos, MouseButton button) {
         boolean direction;
 
-        if (event.getButton() == MouseButton.PRIMARY) direction = true;
-        else if (event.getButton() == MouseButton.SECONDARY) direction = false;
+        if (button == MouseButton.PRIMARY) direction = true;
+        else if (button == MouseButton.SECONDARY) direction = false;
         else return;
 
-        game.rotated(new Position(column,row), direction);
+        game.rotated(pos, direction);
         if(editorMode) game.fillAllConnectedPipes();
     }
 
@@ -572,16 +830,10 @@ public class UserInterfaceController implements Initializable {
     /**
      * the handle of a pipe is dropped
      *
-     * @param dragEvent
+     * @param pos the position on which the pipe is dropped
+     * @param pipeStr the name of the dropped PipeImage
      */
-    @FXML
-    void onPipeDrop(DragEvent dragEvent) {
-        int column = GridPane.getColumnIndex((Node) dragEvent.getSource());
-        int row = GridPane.getRowIndex((Node) dragEvent.getSource());
-        String pipeStr = dragEvent.getDragboard().getString();
-
-        Position pos = new Position(column, row);
-
+    void onPipeDrop(Position pos, String pipeStr) {
         if(pipeStr.equals(PipeImage.SOURCE.name())){
             if(!game.getPlayField().getField(pos).getPipeType().equals(PipeType.WALL)) {
                 game.updateSourcePos(pos);
@@ -605,16 +857,4 @@ public class UserInterfaceController implements Initializable {
         }
         game.fillAllConnectedPipes();
     }
-
-    /**
-     * the handle of a pipe is dragging
-     *
-     * @param dragEvent
-     */
-    @FXML
-    void onPipeDragOver(DragEvent dragEvent) {
-        if(dragEvent.getDragboard().hasString()){
-            dragEvent.acceptTransferModes(TransferMode.ANY);
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,283 @@
+package logic;
+
+import java.util.function.IntConsumer;
+
+/**
+ * an unchangeable snapshot of the pipes and the source of a play field, for undo and redo.
+ * The pipe numbers are kept in tiles of 128 cells, which are the leaves of a tree with 32 children per node.
+ * A changed snapshot copies only the tile of the changed cell and the nodes on the path to it,
+ * all other tiles and nodes are shared with the snapshot before.
+ * So a change costs a few hundred bytes, no matter how large the board is,
+ * and two snapshots are compared by skipping all shared nodes.
+ *
+ * @author LiChieh Chou
+ */
+final class BoardSnapshot {
+    /**
+     * the number of bits of a cell index within a tile
+     */
+    private static final int TILE_BITS = 7;
+
+    /**
+     * the number of cells in a tile
+     */
+    private static final int TILE_SIZE = 1 << TILE_BITS;
+
+    /**
+     * the number of bits of a child index within a node
+     */
+    private static final int NODE_BITS = 5;
+
+    /**
+     * the number of children of a node
+     */
+    private static final int NODE_SIZE = 1 << NODE_BITS;
+
+    /**
+     * the size(columns) of the board
+     */
+    private final int columns;
+
+    /**
+     * the size(rows) of the board
+     */
+    private final int rows;
+
+    /**
+     * the source position, or null if there is no source
+     */
+    private final Position sourcePos;
+
+    /**
+     * the number of node levels above the tiles
+     */
+    private final int depth;
+
+    /**
+     * the root of the tree, a node (Object[]) or, for small boards, a tile (byte[])
+     */
+    private final Object root;
+
+    /**
+     * Constructor for a snapshot
+     *
+     * @param columns the size(columns) of the board
+     * @param rows the size(rows) of the board
+     * @param sourcePos the source position
+     * @param depth the number of node levels above the tiles
+     * @param root the root of the tree
+     */
+    private BoardSnapshot(int columns, int rows, Position sourcePos, int depth, Object root) {
+        this.columns = columns;
+        this.rows = rows;
+        this.sourcePos = sourcePos;
+        this.depth = depth;
+        this.root = root;
+    }
+
+    /**
+     * to take a snapshot of a play field
+     *
+     * @param playField the play field
+     * @return the snapshot
+     */
+    static BoardSnapshot of(PlayField playField) {
+        int size = playField.getColumns() * playField.getRows();
+
+        Object[] level = new Object[Math.max(1, (size + TILE_SIZE - 1) >> TILE_BITS)];
+        for (int tile = 0; tile < level.length; tile++) {
+            byte[] cells = new byte[TILE_SIZE];
+            int start = tile << TILE_BITS;
+            for (int i = 0; (i < TILE_SIZE) && (start + i < size); i++) {
+                cells[i] = (byte) playField.getPipeNumber(start + i);
+            }
+            level[tile] = cells;
+        }
+
+        int depth = 0;
+        while (level.length > 1) {
+            Object[] parents = new Object[(level.length + NODE_SIZE - 1) >> NODE_BITS];
+            for (int parent = 0; parent < parents.length; parent++) {
+                Object[] children = new Object[NODE_SIZE];
+                System.arraycopy(level, parent << NODE_BITS, children, 0,
+                        Math.min(NODE_SIZE, level.length - (parent << NODE_BITS)));
+                parents[parent] = children;
+            }
+            level = parents;
+            depth++;
+        }
+        return new BoardSnapshot(playField.getColumns(), playField.getRows(), playField.getSourcePos(), depth, level[0]);
+    }
+
+    /**
+     * to get the columns of the board
+     *
+     * @return columns number
+     */
+    int getColumns() {
+        return columns;
+    }
+
+    /**
+     * to get the rows of the board
+     *
+     * @return rows number
+     */
+    int getRows() {
+        return rows;
+    }
+
+    /**
+     * to get the source position
+     *
+     * @return the source position, or null if there is no source
+     */
+    Position getSourcePos() {
+        return sourcePos;
+    }
+
+    /**
+     * to get the index of a position on the board
+     *
+     * @param pos the position
+     * @return the index of the cell
+     */
+    int indexOf(Position pos) {
+        return pos.getY() * columns + pos.getX();
+    }
+
+    /**
+     * to get the pipe number of a cell
+     *
+     * @param index the index of the cell
+     * @return the pipe number
+     */
+    int getPipeNumber(int index) {
+        Object node = root;
+        for (int level = depth; level > 0; level--) {
+            node = ((Object[]) node)[childIndex(index, level)];
+        }
+        return ((byte[]) node)[index & (TILE_SIZE - 1)];
+    }
+
+    /**
+     * to get a snapshot in which one cell has another pipe number
+     *
+     * @param index the index of the cell
+     * @param pipeNumber the new pipe number
+     * @return the new snapshot, which shares all other tiles with this one; or this, if nothing is changed
+     */
+    BoardSnapshot withPipeNumber(int index, int pipeNumber) {
+        BoardSnapshot toReturn = this;
+        if (getPipeNumber(index) != pipeNumber)
+            toReturn = new BoardSnapshot(columns, rows, sourcePos, depth, withPipeNumber(root, depth, index, pipeNumber));
+        return toReturn;
+    }
+
+    /**
+     * to copy the path to a cell and change the cell
+     *
+     * @param node the node on the path
+     * @param level the level of the node
+     * @param index the index of the cell
+     * @param pipeNumber the new pipe number
+     * @return the copy of the node
+     */
+    private static Object withPipeNumber(Object node, int level, int index, int pipeNumber) {
+        Object toReturn;
+        if (level == 0) {
+            byte[] tile = ((byte[]) node).clone();
+            tile[index & (TILE_SIZE - 1)] = (byte) pipeNumber;
+            toReturn = tile;
+        } else {
+            Object[] children = ((Object[]) node).clone();
+            int child = childIndex(index, level);
+            children[child] = withPipeNumber(children[child], level - 1, index, pipeNumber);
+            toReturn = children;
+        }
+        return toReturn;
+    }
+
+    /**
+     * to get a snapshot with another source position
+     *
+     * @param pos the new source position, or null if there is no source
+     * @return the new snapshot, which shares all tiles with this one
+     */
+    BoardSnapshot withSourcePos(Position pos) {
+        return new BoardSnapshot(columns, rows, pos, depth, root);
+    }
+
+    /**
+     * to check if another snapshot has the same size, so that the differences of the cells can be found
+     *
+     * @param other the other snapshot
+     * @return true, if both have the same size; false, otherwise
+     */
+    boolean hasSameSize(BoardSnapshot other) {
+        return (columns == other.columns) && (rows == other.rows);
+    }
+
+    /**
+     * to find the cells which have another pipe number in another snapshot of the same size.
+     * The nodes which are shared by both snapshots are skipped.
+     *
+     * @param other the other snapshot
+     * @param action called with the index of each different cell
+     */
+    void forEachDifference(BoardSnapshot other, IntConsumer action) {
+        forEachDifference(root, other.root, depth, 0, action);
+    }
+
+    /**
+     * to find the different cells below two nodes
+     *
+     * @param node the node of this snapshot
+     * @param otherNode the node of the other snapshot
+     * @param level the level of the nodes
+     * @param start the index of the first cell below the nodes
+     * @param action called with the index of each different cell
+     */
+    private void forEachDifference(Object node, Object otherNode, int level, int start, IntConsumer action) {
+        if (node != otherNode) {
+            if (level == 0) {
+                byte[] tile = (byte[]) node;
+                byte[] otherTile = (byte[]) otherNode;
+                for (int i = 0; i < TILE_SIZE; i++) {
+                    if (tile[i] != otherTile[i]) action.accept(start + i);
+                }
+            } else {
+                Object[] children = (Object[]) node;
+                Object[] otherChildren = (Object[]) otherNode;
+                int childCells = 1 << (TILE_BITS + (level - 1) * NODE_BITS);
+                for (int i = 0; (i < NODE_SIZE) && (children[i] != null); i++) {
+                    forEachDifference(children[i], otherChildren[i], level - 1, start + i * childCells, action);
+                }
+            }
+        }
+    }
+
+    /**
+     * to get the pipe numbers of all cells
+     *
+     * @return the pipe number of each cell, in the order of the cell indexes
+     */
+    byte[] toPipeNumbers() {
+        byte[] toReturn = new byte[columns * rows];
+        for (int index = 0; index < toReturn.length; index++) {
+            toReturn[index] = (byte) getPipeNumber(index);
+        }
+        return toReturn;
+    }
+
+    /**
+     * to get the index of the child on the path to a cell
+     *
+     * @param index the index of the cell
+     * @param level the level of the node
+     * @return the index of the child
+     */
+    private static int childIndex(int index, int level) {
+        return (index >>> (TILE_BITS + (level - 1) * NODE_BITS)) & (NODE_SIZE - 1);
+    }
+}
@@ -0,0 +1,39 @@
+package logic;
+
+import java.util.Arrays;
+
+/**
+ * A growing list of cell indices, which collects the changed cells so that they are displayed together.
+ *
+ * @author LiChieh Chou
+ */
+final class CellList {
+    /**
+     * the indices of the cells
+     */
+    private int[] cells = new int[16];
+
+    /**
+     * the number of cells in the list
+     */
+    private int size;
+
+    /**
+     * to add a cell to the list
+     *
+     * @param index the index of the cell
+     */
+    void add(int index) {
+        if (size == cells.length) cells = Arrays.copyOf(cells, size * 2);
+        cells[size++] = index;
+    }
+
+    /**
+     * to get the cells of the list
+     *
+     * @return the indices of the cells, in the order they were added
+     */
+    int[] toArray() {
+        return Arrays.copyOf(cells, size);
+    }
+}
@@ -0,0 +1,424 @@
+package logic;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the connected components of the pipes of a board up-to-date while the pipes are changed,
+ * so that it can be answered in constant time whether two cells are connected and how big a component is.
+ * <p>
+ * When a pipe gets new connections, the smaller of the joined components is relabeled.
+ * When a pipe loses connections, its component may fall apart: searches are started from the pipe and
+ * from every neighbour it was connected to and run in turns, until only one of them is still running.
+ * The pieces that were found completely get a new label, the last piece keeps the old label,
+ * so only the smaller pieces are traversed.
+ * Wall pieces belong to no component.
+ *
+ * @author LiChieh Chou
+ */
+final class Connectivity {
+    /**
+     * the component of a wall piece
+     */
+    private static final int WALL = -1;
+
+    /**
+     * the first mark of the cells found by a search while a component is split,
+     * the search i marks the cells with MARK - i
+     */
+    private static final int MARK = -2;
+
+    /**
+     * the board of which the components are kept
+     */
+    private final PackedBoard board;
+
+    /**
+     * the overflow mode
+     */
+    private boolean overflow;
+
+    /**
+     * false, if the components have to be found again before they can be used
+     */
+    private boolean isValid;
+
+    /**
+     * the component of each cell
+     */
+    private final int[] component;
+
+    /**
+     * the number of pipes in each component
+     */
+    private int[] componentSize;
+
+    /**
+     * the labels which are not used by a component
+     */
+    private int[] freeLabels;
+
+    /**
+     * the number of free labels
+     */
+    private int freeLabelCount;
+
+    /**
+     * the smallest label which has never been used
+     */
+    private int nextLabel;
+
+    /**
+     * the stack for relabeling a component
+     */
+    private int[] stack;
+
+    /**
+     * the cells found by each search while a component is split
+     */
+    private final int[][] searchCells;
+
+    /**
+     * the number of cells found by each search
+     */
+    private final int[] searchSize;
+
+    /**
+     * the number of cells already expanded by each search
+     */
+    private final int[] searchExpanded;
+
+    /**
+     * the searches which have met each other, as a union-find forest
+     */
+    private final int[] searchGroup;
+
+    /**
+     * Constructor for the components of a board
+     *
+     * @param board the board
+     * @param overflow the overflow mode
+     */
+    Connectivity(PackedBoard board, boolean overflow) {
+        this.board = board;
+        this.overflow = overflow;
+        this.component = new int[board.size()];
+        this.componentSize = new int[16];
+        this.freeLabels = new int[16];
+        this.stack = new int[64];
+        this.searchCells = new int[5][16];
+        this.searchSize = new int[5];
+        this.searchExpanded = new int[5];
+        this.searchGroup = new int[5];
+        invalidate();
+    }
+
+    /**
+     * to set the overflow mode, the components will be found again when they are used next time
+     *
+     * @param overflow the overflow mode
+     */
+    void setOverflow(boolean overflow) {
+        this.overflow = overflow;
+        invalidate();
+    }
+
+    /**
+     * to stop keeping the components up-to-date, for example while many pipes are changed at once.
+     * They will be found again when they are used next time.
+     */
+    void invalidate() {
+        isValid = false;
+    }
+
+    /**
+     * to set the pipe number of a cell on the board and to update the components
+     *
+     * @param index the index of the cell
+     * @param pipeNumber the new pipe number
+     */
+    void setPipeNumber(int index, int pipeNumber) {
+        if (!isValid) {
+            board.setPipeNumber(index, pipeNumber);
+            return;
+        }
+
+        int oldPipeNumber = board.getPipeNumber(index);
+        int keptPipeNumber = oldPipeNumber & pipeNumber;
+
+        if (keptPipeNumber != oldPipeNumber) {
+            int[] seeds = {index, -1, -1, -1, -1};
+            int seedCount = 1;
+            for (Direction dir : Direction.values()) {
+                if ((oldPipeNumber & ~keptPipeNumber & dir.getBit()) != 0) {
+                    int neighbour = board.connectedNeighbour(index, dir, overflow);
+                    boolean isSeed = (neighbour < 0);
+                    for (int i = 0; (i < seedCount) && (!isSeed); i++) {
+                        isSeed = (seeds[i] == neighbour);
+                    }
+                    if (!isSeed) seeds[seedCount++] = neighbour;
+                }
+            }
+            board.setPipeNumber(index, keptPipeNumber);
+            if (seedCount > 1) split(seeds, seedCount);
+        }
+
+        board.setPipeNumber(index, pipeNumber);
+        if ((pipeNumber == 0) && (component[index] != WALL)) {
+            removeFromComponent(index);
+        } else if (pipeNumber != 0) {
+            if (component[index] == WALL) component[index] = newComponent(1);
+            for (Direction dir : Direction.values()) {
+                if ((pipeNumber & ~keptPipeNumber & dir.getBit()) != 0) {
+                    int neighbour = board.connectedNeighbour(index, dir, overflow);
+                    if ((neighbour >= 0) && (component[neighbour] != component[index]))
+                        merge(index, neighbour);
+                }
+            }
+        }
+    }
+
+    /**
+     * to check if two cells are connected by pipes
+     *
+     * @param index1 the index of the first cell
+     * @param index2 the index of the second cell
+     * @return true, if they are connected; false, if not or if one of them is a wall piece
+     */
+    boolean isConnected(int index1, int index2) {
+        ensureValid();
+        return (component[index1] != WALL) && (component[index1] == component[index2]);
+    }
+
+    /**
+     * to get the number of pipes which are connected to a cell, the cell included
+     *
+     * @param index the index of the cell
+     * @return the number of pipes, 0 for a wall piece
+     */
+    int getComponentSize(int index) {
+        ensureValid();
+        int toReturn = 0;
+        if (component[index] != WALL) toReturn = componentSize[component[index]];
+        return toReturn;
+    }
+
+    /**
+     * to find all components again, if they are not up-to-date
+     */
+    private void ensureValid() {
+        if (!isValid) {
+            Arrays.fill(component, WALL);
+            freeLabelCount = 0;
+            nextLabel = 0;
+            for (int i = 0; i < component.length; i++) {
+                if ((component[i] == WALL) && (board.getPipeNumber(i) != 0)) {
+                    int label = newComponent(0);
+                    component[i] = label;
+                    componentSize[label] = relabel(i, WALL, label);
+                }
+            }
+            isValid = true;
+        }
+    }
+
+    /**
+     * to join the components of two cells which have just been connected,
+     * the smaller component is relabeled
+     *
+     * @param index1 the index of the first cell
+     * @param index2 the index of the second cell
+     */
+    private void merge(int index1, int index2) {
+        int label1 = component[index1];
+        int label2 = component[index2];
+        if (componentSize[label1] < componentSize[label2]) {
+            component[index1] = label2;
+            componentSize[label2] += relabel(index1, label1, label2);
+        } else {
+            component[index2] = label1;
+            componentSize[label1] += relabel(index2, label2, label1);
+        }
+        freeLabel(component[index1] == label1 ? label2 : label1);
+    }
+
+    /**
+     * to relabel all cells connected to a start cell which have a certain label
+     *
+     * @param start the index of the start cell, which is already relabeled
+     * @param from the label to be replaced
+     * @param to the new label
+     * @return the number of relabeled cells, the start cell included
+     */
+    private int relabel(int start, int from, int to) {
+        int counter = 0;
+        int size = 0;
+        stack[size++] = start;
+        while (size > 0) {
+            int index = stack[--size];
+            counter++;
+            for (Direction dir : Direction.values()) {
+                int neighbour = board.connectedNeighbour(index, dir, overflow);
+                if ((neighbour >= 0) && (component[neighbour] == from)) {
+                    component[neighbour] = to;
+                    if (size == stack.length) stack = Arrays.copyOf(stack, size * 2);
+                    stack[size++] = neighbour;
+                }
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * to split the component of the seeds, which may have fallen apart.
+     * A search is started from every seed, the searches run in turns until at most one of them is still running.
+     *
+     * @param seeds the cells which were connected before
+     * @param seedCount the number of seeds
+     */
+    private void split(int[] seeds, int seedCount) {
+        int oldLabel = component[seeds[0]];
+
+        for (int i = 0; i < seedCount; i++) {
+            searchCells[i][0] = seeds[i];
+            searchSize[i] = 1;
+            searchExpanded[i] = 0;
+            searchGroup[i] = i;
+            component[seeds[i]] = MARK - i;
+        }
+
+        while (countRunningGroups(seedCount) > 1) {
+            for (int i = 0; i < seedCount; i++) {
+                if (searchExpanded[i] < searchSize[i]) {
+                    int index = searchCells[i][searchExpanded[i]++];
+                    for (Direction dir : Direction.values()) {
+                        int neighbour = board.connectedNeighbour(index, dir, overflow);
+                        if (neighbour < 0) continue;
+                        if (component[neighbour] == oldLabel) {
+                            component[neighbour] = MARK - i;
+                            if (searchSize[i] == searchCells[i].length)
+                                searchCells[i] = Arrays.copyOf(searchCells[i], searchSize[i] * 2);
+                            searchCells[i][searchSize[i]++] = neighbour;
+                        } else if (component[neighbour] <= MARK) {
+                            searchGroup[findGroup(MARK - component[neighbour])] = findGroup(i);
+                        }
+                    }
+                }
+            }
+        }
+
+        int keptGroup = -1;
+        for (int i = 0; i < seedCount; i++) {
+            int group = findGroup(i);
+            if (isRunning(group, seedCount)) keptGroup = group;
+        }
+        if (keptGroup < 0) {
+            for (int i = 0; i < seedCount; i++) {
+                int group = findGroup(i);
+                if ((keptGroup < 0) || (countGroupCells(group, seedCount) > countGroupCells(keptGroup, seedCount)))
+                    keptGroup = group;
+            }
+        }
+
+        for (int i = 0; i < seedCount; i++) {
+            if ((findGroup(i) == i) && (i != keptGroup)) {
+                int label = newComponent(countGroupCells(i, seedCount));
+                componentSize[oldLabel] -= componentSize[label];
+                labelGroup(i, seedCount, label);
+            }
+        }
+        labelGroup(keptGroup, seedCount, oldLabel);
+    }
+
+    /**
+     * to count the groups of searches of which at least one search is still running
+     */
+    private int countRunningGroups(int seedCount) {
+        int counter = 0;
+        for (int i = 0; i < seedCount; i++) {
+            if ((findGroup(i) == i) && isRunning(i, seedCount)) counter++;
+        }
+        return counter;
+    }
+
+    /**
+     * to check if a search of a group is still running
+     */
+    private boolean isRunning(int group, int seedCount) {
+        boolean toReturn = false;
+        for (int i = 0; i < seedCount; i++) {
+            if ((findGroup(i) == group) && (searchExpanded[i] < searchSize[i])) toReturn = true;
+        }
+        return toReturn;
+    }
+
+    /**
+     * to count the cells found by the searches of a group
+     */
+    private int countGroupCells(int group, int seedCount) {
+        int counter = 0;
+        for (int i = 0; i < seedCount; i++) {
+            if (findGroup(i) == group) counter += searchSize[i];
+        }
+        return counter;
+    }
+
+    /**
+     * to label the cells found by the searches of a group
+     */
+    private void labelGroup(int group, int seedCount, int label) {
+        for (int i = 0; i < seedCount; i++) {
+            if (findGroup(i) == group) {
+                for (int j = 0; j < searchSize[i]; j++) {
+                    component[searchCells[i][j]] = label;
+                }
+            }
+        }
+    }
+
+    /**
+     * to find the group of a search
+     */
+    private int findGroup(int search) {
+        while (searchGroup[search] != search) search = searchGroup[search];
+        return search;
+    }
+
+    /**
+     * to remove a cell, which is connected to no other cell, from its component
+     *
+     * @param index the index of the cell
+     */
+    private void removeFromComponent(int index) {
+        int label = component[index];
+        component[index] = WALL;
+        if (--componentSize[label] == 0) freeLabel(label);
+    }
+
+    /**
+     * to get an unused label for a new component
+     *
+     * @param size the number of pipes in the component
+     * @return the label
+     */
+    private int newComponent(int size) {
+        int label;
+        if (freeLabelCount > 0) {
+            label = freeLabels[--freeLabelCount];
+        } else {
+            label = nextLabel++;
+            if (label == componentSize.length) componentSize = Arrays.copyOf(componentSize, label * 2);
+        }
+        componentSize[label] = size;
+        return label;
+    }
+
+    /**
+     * to give back the label of a component which does not exist any more
+     *
+     * @param label the label
+     */
+    private void freeLabel(int label) {
+        if (freeLabelCount == freeLabels.length) freeLabels = Arrays.copyOf(freeLabels, freeLabelCount * 2);
+        freeLabels[freeLabelCount++] = label;
+    }
+}
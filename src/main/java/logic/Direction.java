@@ -8,4 +8,28 @@ package logic;
  */
 public enum Direction {
     TOP, RIGHT, BOTTOM, LEFT;
+
+    private static final Direction[] DIRECTIONS = values();
+
+    /**
+     * to get the bit of this direction in a pipe number
+     * which follows the rule:
+     * Opening to   Left    Bottom  Right   Top
+     * Bit          4       3       2       1
+     * Decimal      8       4       2       1
+     *
+     * @return the bit of this direction
+     */
+    public int getBit() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * to get the opposite direction
+     *
+     * @return the opposite direction
+     */
+    public Direction opposite() {
+        return DIRECTIONS[(ordinal() + 2) % 4];
+    }
 }
@@ -0,0 +1,137 @@
+package logic;
+
+import java.io.FilterReader;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.function.DoubleConsumer;
+
+/**
+ * the progress of a game file that is saved or loaded.
+ * The progress is counted in characters or bytes against the expected length of the file
+ * and reported in steps of one percent, so that the listener is not called for every character.
+ * When the thread is interrupted, the next step throws an InterruptedIOException,
+ * so that a cancelled task stops soon.
+ *
+ * @author LiChieh Chou
+ */
+final class FileProgress {
+    /**
+     * the number of reported steps
+     */
+    private static final int STEPS = 100;
+
+    /**
+     * the listener of the progress
+     */
+    private final DoubleConsumer listener;
+
+    /**
+     * the expected length of the file
+     */
+    private final long expected;
+
+    /**
+     * the counted length
+     */
+    private long count;
+
+    /**
+     * the last reported step
+     */
+    private int step;
+
+    /**
+     * Constructor for the progress
+     *
+     * @param expected the expected length of the file, may be a guess
+     * @param listener the listener of the progress
+     */
+    FileProgress(long expected, DoubleConsumer listener) {
+        this.expected = Math.max(1, expected);
+        this.listener = listener;
+        this.count = 0;
+        this.step = 0;
+        listener.accept(0);
+    }
+
+    /**
+     * to count a part of the file
+     *
+     * @param length the length of the part
+     * @throws InterruptedIOException if the thread was interrupted
+     */
+    void advance(long length) throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) throw new InterruptedIOException("Cancelled");
+        count += length;
+        int newStep = (int) Math.min(STEPS - 1, count * STEPS / expected);
+        if (newStep > step) {
+            step = newStep;
+            listener.accept((double) step / STEPS);
+        }
+    }
+
+    /**
+     * to report that the whole file is saved or loaded
+     *
+     * @throws InterruptedIOException if the thread was interrupted
+     */
+    void done() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) throw new InterruptedIOException("Cancelled");
+        listener.accept(1);
+    }
+
+    /**
+     * to count the characters that are read through a reader
+     *
+     * @param reader the reader
+     * @return the counting reader
+     */
+    Reader wrap(Reader reader) {
+        return new FilterReader(reader) {
+            @Override
+            public int read() throws IOException {
+                int toReturn = super.read();
+                if (toReturn >= 0) advance(1);
+                return toReturn;
+            }
+
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                int toReturn = super.read(buffer, offset, length);
+                if (toReturn > 0) advance(toReturn);
+                return toReturn;
+            }
+        };
+    }
+
+    /**
+     * to count the characters that are written through a writer
+     *
+     * @param writer the writer
+     * @return the counting writer
+     */
+    Writer wrap(Writer writer) {
+        return new FilterWriter(writer) {
+            @Override
+            public void write(int c) throws IOException {
+                super.write(c);
+                advance(1);
+            }
+
+            @Override
+            public void write(char[] buffer, int offset, int length) throws IOException {
+                super.write(buffer, offset, length);
+                advance(length);
+            }
+
+            @Override
+            public void write(String text, int offset, int length) throws IOException {
+                super.write(text, offset, length);
+                advance(length);
+            }
+        };
+    }
+}
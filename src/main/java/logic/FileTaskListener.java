@@ -0,0 +1,38 @@
+package logic;
+
+/**
+ * The listener of a game file that is saved or loaded in the background,
+ * see {@link Logic#saveGameAsync} and {@link Logic#loadGameAsync}.
+ * All methods are called through the executor which was given together with the listener,
+ * e.g. on the JavaFX application thread.
+ *
+ * @author LiChieh Chou
+ */
+public interface FileTaskListener {
+
+    /**
+     * Called when a part of the file is saved or loaded.
+     *
+     * @param progress the done part, from 0 to 1
+     */
+    default void onProgress(double progress) {
+    }
+
+    /**
+     * Called when the file is saved, or when the loaded play field is displayed.
+     */
+    void onSucceeded();
+
+    /**
+     * Called when the file can not be saved or loaded.
+     *
+     * @param e the reason
+     */
+    void onFailed(Exception e);
+
+    /**
+     * Called when the task was cancelled before it was finished.
+     */
+    default void onCancelled() {
+    }
+}
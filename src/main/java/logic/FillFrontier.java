@@ -0,0 +1,122 @@
+package logic;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The frontier of the filling, which are the filled cells that may still have an unfilled connected neighbour.
+ * The cells are ordered column by column and row by row, which is the order the play field has always been
+ * scanned in, so that the pipes are filled in the same order as before.
+ * Cells are only added when they may have become part of the frontier and are removed
+ * by the play field when they are found to have no unfilled connected neighbour any more.
+ *
+ * @author LiChieh Chou
+ */
+final class FillFrontier {
+    /**
+     * the size(columns) of the play field
+     */
+    private final int columns;
+
+    /**
+     * the size(rows) of the play field
+     */
+    private final int rows;
+
+    /**
+     * the binary min-heap of the scan order of the cells
+     */
+    private int[] heap;
+
+    /**
+     * the number of cells in the heap
+     */
+    private int size;
+
+    /**
+     * the cells in the heap, by index
+     */
+    private final BitSet contained;
+
+    /**
+     * Constructor for an empty frontier
+     *
+     * @param columns the size(columns) of the play field
+     * @param rows the size(rows) of the play field
+     */
+    FillFrontier(int columns, int rows) {
+        this.columns = columns;
+        this.rows = rows;
+        this.heap = new int[16];
+        this.size = 0;
+        this.contained = new BitSet(columns * rows);
+    }
+
+    /**
+     * to add a cell to the frontier, if it is not contained yet
+     *
+     * @param index the index of the cell
+     */
+    void add(int index) {
+        if (!contained.get(index)) {
+            contained.set(index);
+            if (size == heap.length) heap = Arrays.copyOf(heap, size * 2);
+
+            int key = (index % columns) * rows + (index / columns);
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >> 1;
+                if (heap[parent] <= key) break;
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = key;
+        }
+    }
+
+    /**
+     * to get the first cell of the frontier without removing it
+     *
+     * @return the index of the cell, or -1 if the frontier is empty
+     */
+    int peek() {
+        int toReturn = -1;
+        if (size > 0) toReturn = toIndex(heap[0]);
+        return toReturn;
+    }
+
+    /**
+     * to remove the first cell of the frontier
+     */
+    void poll() {
+        if (size > 0) {
+            contained.clear(toIndex(heap[0]));
+            int key = heap[--size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if ((child + 1 < size) && (heap[child + 1] < heap[child])) child++;
+                if (key <= heap[child]) break;
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = key;
+        }
+    }
+
+    /**
+     * to remove all cells from the frontier
+     */
+    void clear() {
+        size = 0;
+        contained.clear();
+    }
+
+    /**
+     * to convert a scan order to the index of the cell
+     */
+    private int toIndex(int key) {
+        return (key % rows) * columns + (key / rows);
+    }
+}
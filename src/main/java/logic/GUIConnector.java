@@ -10,6 +10,35 @@ public interface GUIConnector {
      */
     void displayPipe(Position pos, Pipe pipe, boolean isSource);
 
+    /**
+     * Displays the pipes of many cells of the field at once, e.g. all pipes of which the filled state is changed.
+     * A gui can apply them together; by default each pipe is displayed by {@link #displayPipe}.
+     *
+     * @param playField the play field which holds the pipes
+     * @param cells the indices of the cells (see {@link PlayField#toPosition(int)})
+     */
+    default void displayPipes(PlayField playField, int[] cells) {
+        Position sourcePos = playField.getSourcePos();
+        for (int index : cells) {
+            Position pos = playField.toPosition(index);
+            displayPipe(pos, playField.getField(pos), pos.equals(sourcePos));
+        }
+    }
+
+    /**
+     * Displays the pipes of all cells of the field at once.
+     * A gui can apply them together; by default each pipe is displayed by {@link #displayPipe}.
+     *
+     * @param playField the play field which holds the pipes
+     */
+    default void displayPipes(PlayField playField) {
+        Position sourcePos = playField.getSourcePos();
+        for (int index = 0; index < playField.getColumns() * playField.getRows(); index++) {
+            Position pos = playField.toPosition(index);
+            displayPipe(pos, playField.getField(pos), pos.equals(sourcePos));
+        }
+    }
+
     /**
      * Called when the game is finished.
      */
@@ -2,12 +2,32 @@ package logic;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
 import com.google.gson.JsonParseException;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 
 /**
  * This class contains the logic of FloodPipe game
@@ -15,6 +35,15 @@ import java.nio.file.Files;
  * @author LiChieh Chou
  */
 public class Logic {
+    /**
+     * the threads on which game files are saved and loaded in the background
+     */
+    private static final ExecutorService FILE_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "game-file");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     /**
      * Connection to the gui.
      */
@@ -30,6 +59,31 @@ public class Logic {
      */
     private int turns;
 
+    /**
+     * the journal into which the changes of the play field are written, or null
+     */
+    private MoveJournal journal;
+
+    /**
+     * the most number of changes which can be undone
+     */
+    private static final int HISTORY_LIMIT = 10000;
+
+    /**
+     * the snapshot of the current play field
+     */
+    private BoardSnapshot snapshot;
+
+    /**
+     * the snapshots before the changes which can be undone, the latest first
+     */
+    private final Deque<BoardSnapshot> undoHistory = new ArrayDeque<>();
+
+    /**
+     * the snapshots after the changes which can be redone, the latest undone first
+     */
+    private final Deque<BoardSnapshot> redoHistory = new ArrayDeque<>();
+
     /**
      * Constructor for a game of flood pipe.
      * Initializes the field.
@@ -44,9 +98,37 @@ public class Logic {
         this.gui = gui;
 
         turns = 0;
-        playField = new PlayField(columns, rows, overflowMode);
-        playField.generatePlayField(percentageOfWall);
-        playField.mix();
+        playField = PlayField.createPuzzle(columns, rows, overflowMode, percentageOfWall, ThreadLocalRandom.current().nextLong());
+        snapshot = BoardSnapshot.of(playField);
+        handleEndOfGame();
+        displayPlayField();
+    }
+
+    /**
+     * Constructor for a game of flood pipe with an already generated play field,
+     * e.g. taken from a {@link PuzzlePool}.
+     *
+     * @param gui  connection to the gui
+     * @param playField the generated and mixed play field
+     */
+    public Logic(GUIConnector gui, PlayField playField){
+        this(gui, playField, 0);
+    }
+
+    /**
+     * Constructor for a game of flood pipe which goes on with a play field,
+     * e.g. restored from a {@link MoveJournal}.
+     *
+     * @param gui  connection to the gui
+     * @param playField the play field
+     * @param turns the turns the player used so far
+     */
+    public Logic(GUIConnector gui, PlayField playField, int turns){
+        this.gui = gui;
+
+        this.turns = turns;
+        this.playField = playField;
+        snapshot = BoardSnapshot.of(playField);
         handleEndOfGame();
         displayPlayField();
     }
@@ -86,6 +168,7 @@ public class Logic {
                 playField.setField(new Position(i,j),pipe);
             }
         }
+        snapshot = BoardSnapshot.of(playField);
         displayPlayField();
     }
 
@@ -109,12 +192,23 @@ public class Logic {
     }
 
     /**
-     * set the play field
+     * set the journal, into which the play field is written now and all its changes from now on
+     *
+     * @param journal the journal, or null to stop writing a journal
+     */
+    public void setJournal(MoveJournal journal) {
+        this.journal = journal;
+        startJournal();
+    }
+
+    /**
+     * set the play field, with which the history of changes starts again
      *
      * @param playField the new play field to be set
      */
     public void setPlayField(PlayField playField) {
         this.playField = playField;
+        startHistory();
     }
 
     /**
@@ -133,6 +227,7 @@ public class Logic {
      */
     public void setOverflowMode(boolean overflowMode){
         playField.setOverflow(overflowMode);
+        if (journal != null) journal.overflowChanged(overflowMode);
         displayPlayField();
     }
 
@@ -145,6 +240,9 @@ public class Logic {
     public void rotated(Position pos, boolean direction){
         turns++;
         playField.rotation(pos, direction);
+        int index = snapshot.indexOf(pos);
+        remember(snapshot.withPipeNumber(index, playField.getPipeNumber(index)));
+        if (journal != null) journal.rotated(pos, direction);
         clearUnConnectedPipesFilledState();
         this.handleEndOfGame();
         displayPipe(pos);
@@ -157,6 +255,9 @@ public class Logic {
      */
     public void setPipe(Position pos,Pipe pipe){
         playField.setField(pos, pipe);
+        int index = snapshot.indexOf(pos);
+        remember(snapshot.withPipeNumber(index, playField.getPipeNumber(index)));
+        if (journal != null) journal.pipeSet(pos, pipe.getPipeNumber());
         displayPipe(pos);
     }
 
@@ -168,6 +269,8 @@ public class Logic {
     public void updateSourcePos(Position pos){
         Position oldPos = playField.getSourcePos();
         playField.setSourcePos(pos);
+        remember(snapshot.withSourcePos(pos));
+        if (journal != null) journal.sourceMoved(pos);
         if (oldPos != null) displayPipe(oldPos);
         if (pos != null) displayPipe(pos);
     }
@@ -189,7 +292,7 @@ public class Logic {
      * and initiates the response on the gui.
      */
     private void handleEndOfGame(){
-        if(playField.checkAllPipesReachableFromSource() && playField.checkOpenEnd()){
+        if(playField.checkOpenEnd() && playField.checkAllPipesReachableFromSource()){
             fillAllConnectedPipes();
             displayPlayField();
             gui.onGameEnd(turns);
@@ -207,7 +310,7 @@ public class Logic {
 
         PlayField oldPlayField = playField;
         PlayField newPlayField = new PlayField(columns, rows, oldPlayField.getOverflow());
-        setPlayField(newPlayField);
+        playField = newPlayField;
         newPlayField.setAllCellsAsWallPieces();
 
         for(int i = 0;((i < oldPlayField.getColumns()) && (i < columns));i++){
@@ -221,6 +324,8 @@ public class Logic {
             if ((oldPlayField.getSourcePos().getX() < columns) && (oldPlayField.getSourcePos().getY() < rows))
                 newPlayField.setSourcePos(oldPlayField.getSourcePos());
         }
+        remember(BoardSnapshot.of(newPlayField));
+        if (journal != null) journal.resized(columns, rows);
         displayPlayField();
     }
 
@@ -229,6 +334,8 @@ public class Logic {
      */
     public void newPlayField(){
         getPlayField().setAllCellsAsWallPieces();
+        remember(BoardSnapshot.of(playField));
+        startJournal();
         displayPlayField();
     }
 
@@ -237,20 +344,104 @@ public class Logic {
      */
     public void mix(){
         getPlayField().mix();
+        remember(BoardSnapshot.of(playField));
+        startJournal();
         fillAllConnectedPipes();
         displayPlayField();
     }
 
+    /**
+     * to undo the last change of the play field, in the game mode or in the editor mode
+     *
+     * @return true, if a change was undone; false, if there is no change to undo
+     */
+    public boolean undo(){
+        boolean toReturn = !undoHistory.isEmpty();
+        if (toReturn) {
+            redoHistory.push(snapshot);
+            restore(undoHistory.pop());
+        }
+        return toReturn;
+    }
+
+    /**
+     * to redo the last undone change of the play field
+     *
+     * @return true, if a change was redone; false, if there is no change to redo
+     */
+    public boolean redo(){
+        boolean toReturn = !redoHistory.isEmpty();
+        if (toReturn) {
+            undoHistory.push(snapshot);
+            restore(redoHistory.pop());
+        }
+        return toReturn;
+    }
+
+    /**
+     * to remember a change of the play field, which can be undone from now on
+     *
+     * @param next the snapshot after the change
+     */
+    private void remember(BoardSnapshot next){
+        if (next != snapshot) {
+            undoHistory.push(snapshot);
+            if (undoHistory.size() > HISTORY_LIMIT) undoHistory.removeLast();
+            redoHistory.clear();
+            snapshot = next;
+        }
+    }
+
+    /**
+     * to bring the play field back to a snapshot.
+     * Only the cells which differ from the current snapshot are changed and displayed;
+     * if the size differs, the whole play field is built again.
+     *
+     * @param target the snapshot
+     */
+    private void restore(BoardSnapshot target){
+        if (target.hasSameSize(snapshot)) {
+            CellList changed = new CellList();
+            target.forEachDifference(snapshot, index -> {
+                playField.setPipeNumber(index, target.getPipeNumber(index));
+                if (journal != null) journal.pipeSet(playField.toPosition(index), target.getPipeNumber(index));
+                changed.add(index);
+            });
+            gui.displayPipes(playField, changed.toArray());
+            Position oldPos = playField.getSourcePos();
+            if (!Objects.equals(oldPos, target.getSourcePos())) {
+                playField.setSourcePos(target.getSourcePos());
+                if (journal != null) journal.sourceMoved(target.getSourcePos());
+                if (oldPos != null) displayPipe(oldPos);
+                if (target.getSourcePos() != null) displayPipe(target.getSourcePos());
+            }
+            snapshot = target;
+            clearUnConnectedPipesFilledState();
+            handleEndOfGame();
+        } else {
+            PlayField restored = new PlayField(target.getColumns(), target.getRows(), playField.getOverflow());
+            restored.setPipeNumbers(target.toPipeNumbers());
+            restored.setSourcePos(target.getSourcePos());
+            playField = restored;
+            snapshot = target;
+            gui.resize(playField.getColumns(), playField.getRows());
+            startJournal();
+            displayPlayField();
+        }
+    }
+
     /**
      * to fill all the pipes that are connected to the source
      */
     public void fillAllConnectedPipes(){
         if(getPlayField().getSourcePos() != null) {
+            CellList filled = new CellList();
             Position findNextFillablePipePos;
             do {
                 findNextFillablePipePos = getPlayField().findNextFillablePipe();
-                if(findNextFillablePipePos != null) displayPipe(findNextFillablePipePos);
+                if(findNextFillablePipePos != null) filled.add(playField.indexOf(findNextFillablePipePos));
             } while (findNextFillablePipePos != null);
+            gui.displayPipes(playField, filled.toArray());
             clearUnConnectedPipesFilledState();
         }
         else {
@@ -263,64 +454,244 @@ public class Logic {
      * to clear the Filling state for all pipes that are not connected to the source
      */
     private void clearUnConnectedPipesFilledState(){
-        Position unConnectPipePos;
-        do{
-            unConnectPipePos = playField.clearOneUnConnectedPipeFilledState();
-            if(unConnectPipePos != null) displayPipe(unConnectPipePos);
-        }while(unConnectPipePos != null);
+        int[] cleared = playField.clearUnConnectedPipesFilledState();
+        if (cleared.length > 0) gui.displayPipes(playField, cleared);
     }
 
     /**
-     * Save the game to a file
+     * Save the game to a file.
+     * A file with the extension ".fpb" is saved in the compact binary format, any other file as JSON.
      *
      * @param file   The file to save
      */
     public void saveGame(File file) {
-        Gson gson = new GsonBuilder().registerTypeAdapter(PlayField.class, new PlayFieldSerializer()).create();
         try {
-            PrintWriter writer;
-            writer = new PrintWriter(file);
-            writer.println(gson.toJson(playField));
-            writer.close();
-        } catch (IOException ex) {
+            writePlayField(playField, file.toPath(), new FileProgress(0, progress -> {}));
+        } catch (IOException | JsonIOException ex) {
             System.out.println("An error occurred.");
             ex.printStackTrace();
         }
     }
 
     /**
-     * Load the game from a file
+     * Save the game to a file on a background thread, so that the gui is not blocked.
+     * A copy of the play field is saved, so the game can go on in the meantime.
+     * The file is only replaced when the whole play field is written.
+     *
+     * @param file   The file to save
+     * @param callbackExecutor the executor through which the listener is called, e.g. the gui thread
+     * @param listener the listener of the progress and the result
+     * @return the task, which can be cancelled
+     */
+    public Future<?> saveGameAsync(File file, Executor callbackExecutor, FileTaskListener listener) {
+        PlayField copy = playField.copy();
+        return submit(() -> {
+            writePlayField(copy, file.toPath(), new FileProgress(expectedFileSize(copy, file.toPath()),
+                    progress -> callbackExecutor.execute(() -> listener.onProgress(progress))));
+            return copy;
+        }, callbackExecutor, listener, saved -> {});
+    }
+
+    /**
+     * Load the game from a file.
+     * The format (binary or JSON) is detected from the content of the file.
      *
      * @param file   The file to load
      */
     public void loadGame(File file) throws Exception {
-        String json = Files.readString(file.toPath());
-        Gson gson = new GsonBuilder().registerTypeAdapter(PlayField.class,new PlayFieldDeserializer()).create();
+        showLoadedPlayField(readPlayField(file.toPath(), new FileProgress(0, progress -> {})));
+    }
 
-        try{
-            playField = gson.fromJson(json, PlayField.class);
-        } catch(JsonParseException e){
-            throw new Exception("File format error");
-        }
+    /**
+     * Load the game from a file on a background thread, so that the gui is not blocked.
+     * When the file is read, the play field is displayed in one pass through the callback executor.
+     *
+     * @param file   The file to load
+     * @param callbackExecutor the executor through which the play field is displayed and the listener is called,
+     *                         e.g. the gui thread
+     * @param listener the listener of the progress and the result
+     * @return the task, which can be cancelled
+     */
+    public Future<?> loadGameAsync(File file, Executor callbackExecutor, FileTaskListener listener) {
+        return submit(() -> readPlayField(file.toPath(), new FileProgress(Files.size(file.toPath()),
+                progress -> callbackExecutor.execute(() -> listener.onProgress(progress)))),
+                callbackExecutor, listener, this::showLoadedPlayField);
+    }
 
-        if(playField != null){
-            resize(playField.getColumns(), playField.getRows());
-            displayPlayField();
+    /**
+     * Load one level of a puzzle pack.
+     * Only this level is read from the file, no matter how many levels the pack has.
+     *
+     * @param pack   The puzzle pack
+     * @param level  The number of the level, starting at 0
+     */
+    public void loadLevel(File pack, int level) throws Exception {
+        showLoadedLevel(PuzzlePack.readLevel(pack.toPath(), level));
+    }
+
+    /**
+     * Load one level of a puzzle pack on a background thread, see {@link #loadLevel} and {@link #loadGameAsync}.
+     *
+     * @param pack   The puzzle pack
+     * @param level  The number of the level, starting at 0
+     * @param callbackExecutor the executor through which the play field is displayed and the listener is called
+     * @param listener the listener of the result
+     * @return the task, which can be cancelled
+     */
+    public Future<?> loadLevelAsync(File pack, int level, Executor callbackExecutor, FileTaskListener listener) {
+        return submit(() -> PuzzlePack.readLevel(pack.toPath(), level), callbackExecutor, listener, this::showLoadedLevel);
+    }
+
+    /**
+     * to run a task on a file in the background and hand its result over through the callback executor
+     *
+     * @param work the task on the file
+     * @param callbackExecutor the executor through which the result is handled and the listener is called
+     * @param listener the listener of the result
+     * @param onResult to handle the result, before the listener is told that the task succeeded
+     * @return the task, which can be cancelled
+     */
+    private Future<PlayField> submit(Callable<PlayField> work, Executor callbackExecutor, FileTaskListener listener,
+                                     Consumer<PlayField> onResult) {
+        FutureTask<PlayField> task = new FutureTask<>(work) {
+            @Override
+            protected void done() {
+                callbackExecutor.execute(() -> {
+                    if (isCancelled()) {
+                        listener.onCancelled();
+                        return;
+                    }
+                    try {
+                        onResult.accept(get());
+                    } catch (InterruptedException | ExecutionException e) {
+                        Throwable cause = (e instanceof ExecutionException) ? e.getCause() : e;
+                        listener.onFailed((cause instanceof Exception) ? (Exception) cause : new Exception(cause.toString(), cause));
+                        return;
+                    }
+                    listener.onSucceeded();
+                });
+            }
+        };
+        FILE_EXECUTOR.execute(task);
+        return task;
+    }
+
+    /**
+     * to display a loaded play field, which replaces the current play field
+     *
+     * @param loaded the loaded play field
+     */
+    private void showLoadedPlayField(PlayField loaded) {
+        playField = loaded;
+        startHistory();
+        gui.resize(playField.getColumns(), playField.getRows());
+        displayPlayField();
+    }
+
+    /**
+     * to start the history of changes and the journal again with the current play field
+     */
+    private void startHistory() {
+        snapshot = BoardSnapshot.of(playField);
+        undoHistory.clear();
+        redoHistory.clear();
+        startJournal();
+    }
+
+    /**
+     * to write the whole play field into the journal as the new base, after which the changes are written
+     */
+    private void startJournal() {
+        if (journal != null) journal.reset(playField, turns);
+    }
+
+    /**
+     * to display a loaded level of a puzzle pack, with which a new game starts
+     *
+     * @param loaded the play field of the level
+     */
+    private void showLoadedLevel(PlayField loaded) {
+        turns = 0;
+        showLoadedPlayField(loaded);
+    }
+
+    /**
+     * to write a play field into a file.
+     * The play field is written into a temporary file first, which then replaces the file.
+     *
+     * @param playField the play field
+     * @param path the file
+     * @param progress the progress of writing
+     * @throws IOException if the file can not be written
+     */
+    private static void writePlayField(PlayField playField, Path path, FileProgress progress) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".part");
+        try {
+            if (path.getFileName().toString().endsWith(PlayFieldBinaryFormat.FILE_EXTENSION)) {
+                PlayFieldBinaryFormat.write(playField, temporary);
+            } else {
+                Gson gson = new GsonBuilder().registerTypeAdapter(PlayField.class, new PlayFieldTypeAdapter()).create();
+                try (Writer writer = new BufferedWriter(progress.wrap(
+                        new OutputStreamWriter(Files.newOutputStream(temporary), StandardCharsets.UTF_8)))) {
+                    gson.toJson(playField, PlayField.class, writer);
+                    writer.write(System.lineSeparator());
+                }
+            }
+            progress.done();
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
         }
-        else{
-            throw new Exception("Empty File");
+    }
+
+    /**
+     * to guess the size of a saved play field, for the progress of writing
+     *
+     * @param playField the play field
+     * @param path the file
+     * @return the expected size in bytes
+     */
+    private static long expectedFileSize(PlayField playField, Path path) {
+        long cells = (long) playField.getColumns() * playField.getRows();
+        long toReturn;
+        if (path.getFileName().toString().endsWith(PlayFieldBinaryFormat.FILE_EXTENSION)) toReturn = cells / 2;
+        else toReturn = cells * 5 / 2 + playField.getColumns() * 3L;
+        return toReturn;
+    }
+
+    /**
+     * to read a play field from a file.
+     * The format (binary or JSON) is detected from the content of the file.
+     *
+     * @param path the file
+     * @param progress the progress of reading
+     * @return the play field
+     * @throws Exception if the file can not be read or has no valid play field
+     */
+    private static PlayField readPlayField(Path path, FileProgress progress) throws Exception {
+        PlayField toReturn;
+        if (PlayFieldBinaryFormat.isBinary(path)) {
+            toReturn = PlayFieldBinaryFormat.read(path);
+        } else {
+            Gson gson = new GsonBuilder().registerTypeAdapter(PlayField.class,new PlayFieldTypeAdapter()).create();
+
+            try (Reader reader = progress.wrap(Files.newBufferedReader(path))) {
+                toReturn = gson.fromJson(reader, PlayField.class);
+            } catch(JsonParseException e){
+                if (e.getCause() instanceof InterruptedIOException) throw (InterruptedIOException) e.getCause();
+                throw new Exception("File format error");
+            }
         }
+        if (toReturn == null) throw new Exception("Empty File");
+        progress.done();
+        return toReturn;
     }
 
     /**
      * to display the play field on the gui
      */
     public void displayPlayField(){
-        for (int i = 0;i < playField.getColumns();i++) {
-            for (int j = 0; j < playField.getRows(); j++) {
-                displayPipe(new Position(i,j));
-            }
-        }
+        gui.displayPipes(playField);
     }
 
     /**
@@ -0,0 +1,717 @@
+package logic;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the journal of a game, an append-only file from which the game can be restored after the program was closed or crashed.
+ * A journal starts with a header of 24 bytes:
+ * magic "FPJL"(4), version(2), flags(1: editor mode), reserved(1), turns(4), reserved(4), size of the base(8).
+ * The base is the play field in the binary format of {@link PlayFieldBinaryFormat}, written when a game starts
+ * or the whole play field is changed. After the base each change is appended as a record of 12 bytes:
+ * type(1), value(1), reserved(2), x or columns(4), y or rows(4).
+ * <p>
+ * The records are collected in memory and written by a background thread in batches,
+ * so a rotation only costs a few bytes in a buffer. The records are written by one thread, the gui thread.
+ * A new base is a copy of the play field, which is also written by the background thread;
+ * the thread of the game only hands the copy and the full batches over and never waits for the file.
+ * Errors of the journal do not stop the game, the journal is just not written anymore.
+ *
+ * @author LiChieh Chou
+ */
+public class MoveJournal implements Closeable {
+    /**
+     * the file extension of journals
+     */
+    public static final String FILE_EXTENSION = ".fpj";
+
+    /**
+     * the magic number at the start of each journal, "FPJL"
+     */
+    private static final int MAGIC = 0x46504A4C;
+
+    /**
+     * the version of the format
+     */
+    private static final short VERSION = 1;
+
+    /**
+     * the size of the header in bytes
+     */
+    private static final int HEADER_SIZE = 24;
+
+    /**
+     * the size of a record in bytes
+     */
+    static final int RECORD_SIZE = 12;
+
+    /**
+     * the number of records which are collected before they have to be written
+     */
+    private static final int BATCH_RECORDS = 4096;
+
+    /**
+     * the number of records which are read at once when a journal is replayed
+     */
+    private static final int REPLAY_RECORDS = 65536;
+
+    /**
+     * the time between two batches are written
+     */
+    private static final long FLUSH_INTERVAL_MILLIS = 100;
+
+    /**
+     * the flag for the editor mode
+     */
+    private static final int FLAG_EDITOR_MODE = 1;
+
+    /**
+     * the record of a rotation, the value is the direction of rotation
+     */
+    private static final byte ROTATE = 1;
+
+    /**
+     * the record of a pipe set in the editor, the value is the pipe number
+     */
+    private static final byte SET_PIPE = 2;
+
+    /**
+     * the record of a new source position, the value is 0 if there is no source
+     */
+    private static final byte SOURCE = 3;
+
+    /**
+     * the record of a new size of the play field
+     */
+    private static final byte RESIZE = 4;
+
+    /**
+     * the record of a new overflow mode, the value is the overflow mode
+     */
+    private static final byte OVERFLOW = 5;
+
+    /**
+     * the record of a change between the game mode and the editor mode, the value is the editor mode
+     */
+    private static final byte EDITOR_MODE = 6;
+
+    /**
+     * the pipe number after a clockwise rotation of each pipe number
+     */
+    private static final byte[] CLOCKWISE = new byte[16];
+
+    /**
+     * the pipe number after a counterclockwise rotation of each pipe number
+     */
+    private static final byte[] COUNTERCLOCKWISE = new byte[16];
+
+    static {
+        for (int pipeNumber = 0; pipeNumber < 16; pipeNumber++) {
+            CLOCKWISE[pipeNumber] = (byte) PipeShape.toPipeShape(pipeNumber).clockwise().getPipeNumber();
+            COUNTERCLOCKWISE[pipeNumber] = (byte) PipeShape.toPipeShape(pipeNumber).counterclockwise().getPipeNumber();
+        }
+    }
+
+    /**
+     * the channel of the journal
+     */
+    private final FileChannel channel;
+
+    /**
+     * the background thread which writes the batches
+     */
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * the lock for writing the file, held by the background thread and by close, taken before the lock of the journal
+     */
+    private final Object fileLock;
+
+    /**
+     * the batch into which the records are collected, guarded by the journal
+     */
+    private ByteBuffer pending;
+
+    /**
+     * the full batches which are not written yet, guarded by the journal
+     */
+    private final Deque<ByteBuffer> batches;
+
+    /**
+     * the written batches, which are used again for collecting records, guarded by the journal
+     */
+    private final Deque<ByteBuffer> spares;
+
+    /**
+     * the copy of the play field which is the new base and is not written yet, or null, guarded by the journal
+     */
+    private PlayField base;
+
+    /**
+     * the turns of the game when the base, which is not written yet, was taken, guarded by the journal
+     */
+    private int baseTurns;
+
+    /**
+     * the editor mode when the base, which is not written yet, was taken, guarded by the journal
+     */
+    private boolean baseEditorMode;
+
+    /**
+     * is the file to be emptied by the background thread, guarded by the journal
+     */
+    private boolean isCleared;
+
+    /**
+     * is there a base to which the records belong, guarded by the journal
+     */
+    private boolean hasBase;
+
+    /**
+     * the editor mode
+     */
+    private boolean editorMode;
+
+    /**
+     * is the journal broken by an error
+     */
+    private volatile boolean broken;
+
+    /**
+     * Constructor for the journal.
+     * An existing journal is kept until the next base is written, so it can still be replayed.
+     *
+     * @param path the file of the journal
+     * @throws IOException if the file can not be opened
+     */
+    public MoveJournal(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.fileLock = new Object();
+        this.pending = ByteBuffer.allocate(BATCH_RECORDS * RECORD_SIZE);
+        this.batches = new ArrayDeque<>();
+        this.spares = new ArrayDeque<>();
+        this.hasBase = false;
+        this.editorMode = false;
+        this.broken = false;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "move-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * to start the journal again with a new base, all records before are dropped.
+     * Only a copy of the play field is taken here, the file is written by the background thread.
+     *
+     * @param playField the play field, which is the new base
+     * @param turns the turns of the game so far
+     */
+    void reset(PlayField playField, int turns) {
+        if (broken) return;
+        PlayField copy = playField.copy();
+        synchronized (this) {
+            dropRecords();
+            isCleared = false;
+            base = copy;
+            baseTurns = turns;
+            baseEditorMode = editorMode;
+            hasBase = true;
+        }
+        requestFlush();
+    }
+
+    /**
+     * to empty the journal, e.g. when the game is won or the player does not want to restore it,
+     * so that there is nothing to restore until the next base. The file is emptied by the background thread.
+     */
+    public void clear() {
+        synchronized (this) {
+            dropRecords();
+            base = null;
+            hasBase = false;
+            isCleared = true;
+        }
+        requestFlush();
+    }
+
+    /**
+     * to drop the collected records which are not written yet, guarded by the journal
+     */
+    private void dropRecords() {
+        pending.clear();
+        spares.addAll(batches);
+        batches.clear();
+    }
+
+    /**
+     * to record a rotation
+     *
+     * @param pos the position of the rotated pipe
+     * @param direction the direction of rotation
+     */
+    void rotated(Position pos, boolean direction) {
+        append(ROTATE, direction ? 1 : 0, pos.getX(), pos.getY());
+    }
+
+    /**
+     * to record a pipe set in the editor
+     *
+     * @param pos the position of the pipe
+     * @param pipeNumber the pipe number of the pipe
+     */
+    void pipeSet(Position pos, int pipeNumber) {
+        append(SET_PIPE, pipeNumber, pos.getX(), pos.getY());
+    }
+
+    /**
+     * to record a new source position
+     *
+     * @param pos the new source position, or null if there is no source
+     */
+    void sourceMoved(Position pos) {
+        if (pos != null) append(SOURCE, 1, pos.getX(), pos.getY());
+        else append(SOURCE, 0, 0, 0);
+    }
+
+    /**
+     * to record a new size of the play field
+     *
+     * @param columns the new columns value
+     * @param rows the new rows value
+     */
+    void resized(int columns, int rows) {
+        append(RESIZE, 0, columns, rows);
+    }
+
+    /**
+     * to record a new overflow mode
+     *
+     * @param overflow the new overflow mode
+     */
+    void overflowChanged(boolean overflow) {
+        append(OVERFLOW, overflow ? 1 : 0, 0, 0);
+    }
+
+    /**
+     * to record a change between the game mode and the editor mode
+     *
+     * @param editorMode the new editor mode
+     */
+    public void setEditorMode(boolean editorMode) {
+        this.editorMode = editorMode;
+        append(EDITOR_MODE, editorMode ? 1 : 0, 0, 0);
+    }
+
+    /**
+     * to write the new base, if there is one, and the collected records into the file
+     */
+    public void flush() {
+        synchronized (fileLock) {
+            PlayField newBase;
+            int turns;
+            boolean isEditorMode;
+            boolean clearFile;
+            synchronized (this) {
+                clearFile = isCleared;
+                isCleared = false;
+                newBase = base;
+                turns = baseTurns;
+                isEditorMode = baseEditorMode;
+                base = null;
+                if (pending.position() > 0) {
+                    batches.add(pending);
+                    pending = takeSpare();
+                }
+            }
+            try {
+                if (clearFile && !broken) channel.truncate(0);
+                if ((newBase != null) && !broken) writeBase(newBase, turns, isEditorMode);
+            } catch (IOException e) {
+                fail(e);
+            }
+
+            ByteBuffer batch;
+            while ((batch = nextBatch()) != null) {
+                batch.flip();
+                try {
+                    while (batch.hasRemaining() && !broken) {
+                        channel.write(batch);
+                    }
+                } catch (IOException e) {
+                    fail(e);
+                }
+                batch.clear();
+                synchronized (this) {
+                    spares.add(batch);
+                }
+            }
+        }
+    }
+
+    /**
+     * to write a base and the header of the journal, after which the records are appended
+     *
+     * @param playField the copy of the play field
+     * @param turns the turns of the game when the copy was taken
+     * @param isEditorMode the editor mode when the copy was taken
+     * @throws IOException if the file can not be written
+     */
+    private void writeBase(PlayField playField, int turns, boolean isEditorMode) throws IOException {
+        channel.truncate(0);
+        channel.position(HEADER_SIZE);
+        long baseSize = PlayFieldBinaryFormat.write(playField, channel);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.put((byte) (isEditorMode ? FLAG_EDITOR_MODE : 0));
+        header.put((byte) 0);
+        header.putInt(turns);
+        header.putInt(0);
+        header.putLong(baseSize);
+        header.flip();
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+    }
+
+    /**
+     * to take the next full batch which is not written yet.
+     * After a reset the batches belong to the new base, so they are only taken after the base is written.
+     *
+     * @return the batch, or null if all batches are written or a new base has to be written first
+     */
+    private synchronized ByteBuffer nextBatch() {
+        return ((base == null) && !isCleared) ? batches.poll() : null;
+    }
+
+    /**
+     * to take a batch for collecting records, a written one if there is one
+     *
+     * @return the empty batch
+     */
+    private ByteBuffer takeSpare() {
+        ByteBuffer toReturn = spares.poll();
+        if (toReturn == null) toReturn = ByteBuffer.allocate(BATCH_RECORDS * RECORD_SIZE);
+        return toReturn;
+    }
+
+    /**
+     * to let the background thread write the journal now, instead of after the interval
+     */
+    private void requestFlush() {
+        if (!flusher.isShutdown()) flusher.execute(this::flush);
+    }
+
+    /**
+     * to write the collected records and close the file
+     *
+     * @throws IOException if the file can not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        flusher.shutdownNow();
+        flush();
+        synchronized (fileLock) {
+            if (!broken) channel.force(false);
+            channel.close();
+        }
+    }
+
+    /**
+     * to append a record to the collected records; a full batch is handed over to the background thread
+     *
+     * @param type the type of the record
+     * @param value the value of the record
+     * @param a the x or columns value of the record
+     * @param b the y or rows value of the record
+     */
+    private void append(byte type, int value, int a, int b) {
+        boolean isFull;
+        synchronized (this) {
+            if (!hasBase || broken) return;
+            pending.put(type).put((byte) value).putShort((short) 0).putInt(a).putInt(b);
+            isFull = !pending.hasRemaining();
+            if (isFull) {
+                batches.add(pending);
+                pending = takeSpare();
+            }
+        }
+        if (isFull) requestFlush();
+    }
+
+    /**
+     * to stop the journal after an error
+     *
+     * @param e the error
+     */
+    private void fail(IOException e) {
+        broken = true;
+        System.out.println("The journal can not be written.");
+        e.printStackTrace();
+    }
+
+    /**
+     * to restore a game from a journal, by replaying all records onto the base.
+     * The records are applied to the pipe numbers directly, the play field is built once at the end.
+     * An incomplete record at the end of the journal, e.g. after a crash, is ignored.
+     * The records are read in large blocks into a buffer on the heap and the file is not mapped,
+     * so it is not locked afterwards and the journal can start again in the same file.
+     *
+     * @param path the file of the journal
+     * @return the restored game
+     * @throws IOException if the file can not be read or is not a valid journal
+     */
+    public static Session replay(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) throw new IOException("File format error");
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            PlayFieldBinaryFormat.readFully(channel, header, 0);
+            long baseSize = header.getLong(16);
+            if ((header.getInt(0) != MAGIC) || (header.getShort(4) != VERSION)
+                    || (baseSize <= 0) || (HEADER_SIZE + baseSize > channel.size()))
+                throw new IOException("File format error");
+
+            Session toReturn = new Session(PlayFieldBinaryFormat.read(channel, HEADER_SIZE, baseSize),
+                    header.getInt(8), (header.get(6) & FLAG_EDITOR_MODE) != 0);
+
+            long position = HEADER_SIZE + baseSize;
+            long recordsEnd = position + (channel.size() - position) / RECORD_SIZE * RECORD_SIZE;
+            ByteBuffer records = ByteBuffer.allocate(BATCH_RECORDS * RECORD_SIZE);
+            while (position < recordsEnd) {
+                records.clear();
+                records.limit((int) Math.min(records.capacity(), recordsEnd - position));
+                PlayFieldBinaryFormat.readFully(channel, records, position);
+                position += records.position();
+                records.flip();
+                toReturn.apply(records);
+            }
+            toReturn.build();
+            return toReturn;
+        }
+    }
+
+    /**
+     * a game restored from a journal
+     */
+    public static final class Session {
+        /**
+         * the size(columns) of the play field
+         */
+        private int columns;
+
+        /**
+         * the size(rows) of the play field
+         */
+        private int rows;
+
+        /**
+         * the pipe number of each cell, in the order of the cell indexes
+         */
+        private byte[] pipeNumbers;
+
+        /**
+         * the source position, or null if there is no source
+         */
+        private Position sourcePos;
+
+        /**
+         * the overflow mode
+         */
+        private boolean overflow;
+
+        /**
+         * the seed of the base, or null if the play field is not generated anymore
+         */
+        private Long seed;
+
+        /**
+         * the percentage of wall pieces of the base
+         */
+        private final int percentageOfWall;
+
+        /**
+         * the turns of the game
+         */
+        private int turns;
+
+        /**
+         * the editor mode
+         */
+        private boolean editorMode;
+
+        /**
+         * the number of replayed records
+         */
+        private int recordCount;
+
+        /**
+         * the restored play field
+         */
+        private PlayField playField;
+
+        /**
+         * Constructor for a session, which starts with the base
+         *
+         * @param base the base
+         * @param turns the turns of the game when the base was written
+         * @param editorMode the editor mode when the base was written
+         */
+        private Session(PlayField base, int turns, boolean editorMode) {
+            this.columns = base.getColumns();
+            this.rows = base.getRows();
+            this.pipeNumbers = new byte[columns * rows];
+            for (int index = 0; index < pipeNumbers.length; index++) {
+                pipeNumbers[index] = (byte) base.getPipeNumber(index);
+            }
+            this.sourcePos = base.getSourcePos();
+            this.overflow = base.getOverflow();
+            this.seed = base.getSeed();
+            this.percentageOfWall = base.getPercentageOfWall();
+            this.turns = turns;
+            this.editorMode = editorMode;
+            this.recordCount = 0;
+        }
+
+        /**
+         * to apply the records to the pipe numbers
+         *
+         * @param records the records
+         * @throws IOException if a record is not valid
+         */
+        private void apply(ByteBuffer records) throws IOException {
+            while (records.hasRemaining()) {
+                byte type = records.get();
+                int value = records.get();
+                records.getShort();
+                int a = records.getInt();
+                int b = records.getInt();
+                switch (type) {
+                    case ROTATE -> {
+                        int index = indexOf(a, b);
+                        pipeNumbers[index] = (value != 0) ? COUNTERCLOCKWISE[pipeNumbers[index]] : CLOCKWISE[pipeNumbers[index]];
+                        turns++;
+                    }
+                    case SET_PIPE -> pipeNumbers[indexOf(a, b)] = (byte) PipeShape.toPipeShape(value & 15).getPipeNumber();
+                    case SOURCE -> {
+                        if (value != 0) {
+                            indexOf(a, b);
+                            sourcePos = new Position(a, b);
+                        } else {
+                            sourcePos = null;
+                        }
+                    }
+                    case RESIZE -> resize(a, b);
+                    case OVERFLOW -> overflow = (value != 0);
+                    case EDITOR_MODE -> editorMode = (value != 0);
+                    default -> throw new IOException("File format error");
+                }
+                recordCount++;
+            }
+        }
+
+        /**
+         * to resize the play field in the same way as {@link Logic#resize}:
+         * the new cells are wall pieces and the source is kept if it is still on the play field
+         *
+         * @param newColumns the new columns value
+         * @param newRows the new rows value
+         * @throws IOException if the size is not valid
+         */
+        private void resize(int newColumns, int newRows) throws IOException {
+            if ((newColumns <= 0) || (newRows <= 0) || ((long) newColumns * newRows > Integer.MAX_VALUE - 1))
+                throw new IOException("File format error");
+            byte[] newPipeNumbers = new byte[newColumns * newRows];
+            for (int j = 0; j < Math.min(rows, newRows); j++) {
+                System.arraycopy(pipeNumbers, j * columns, newPipeNumbers, j * newColumns, Math.min(columns, newColumns));
+            }
+            if ((sourcePos != null) && ((sourcePos.getX() >= newColumns) || (sourcePos.getY() >= newRows)))
+                sourcePos = null;
+            columns = newColumns;
+            rows = newRows;
+            pipeNumbers = newPipeNumbers;
+            seed = null;
+        }
+
+        /**
+         * to get the index of a cell in a record
+         *
+         * @param x the column of the cell
+         * @param y the row of the cell
+         * @return the index of the cell
+         * @throws IOException if the cell is not on the play field
+         */
+        private int indexOf(int x, int y) throws IOException {
+            if ((x < 0) || (x >= columns) || (y < 0) || (y >= rows)) throw new IOException("File format error");
+            return y * columns + x;
+        }
+
+        /**
+         * to build the play field from the replayed pipe numbers
+         */
+        private void build() {
+            playField = new PlayField(columns, rows, overflow);
+            playField.setPipeNumbers(pipeNumbers);
+            playField.setSourcePos(sourcePos);
+            if (seed != null) playField.setSeed(seed, percentageOfWall);
+            pipeNumbers = null;
+        }
+
+        /**
+         * to get the restored play field
+         *
+         * @return the play field
+         */
+        public PlayField getPlayField() {
+            return playField;
+        }
+
+        /**
+         * to get the turns of the restored game
+         *
+         * @return the turns
+         */
+        public int getTurns() {
+            return turns;
+        }
+
+        /**
+         * to get if the game was in the editor mode
+         *
+         * @return the editor mode
+         */
+        public boolean isEditorMode() {
+            return editorMode;
+        }
+
+        /**
+         * to get if the restored play field is solved, all pipes are reachable from the source and there is no open end
+         *
+         * @return true, if the play field is solved; false, otherwise
+         */
+        public boolean isSolved() {
+            return playField.checkOpenEnd() && playField.checkAllPipesReachableFromSource();
+        }
+
+        /**
+         * to get the number of replayed records
+         *
+         * @return the number of records
+         */
+        public int getRecordCount() {
+            return recordCount;
+        }
+    }
+}
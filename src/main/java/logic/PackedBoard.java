@@ -0,0 +1,246 @@
+package logic;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The backing store of a play field.
+ * Each cell is kept as its 4-bit pipe number (see {@link Pipe#getPipeNumber()}),
+ * two cells per byte in row-major order, and the filled state of the cells is kept in a separate bitset.
+ *
+ * @author LiChieh Chou
+ */
+final class PackedBoard {
+    /**
+     * the size(columns) of the board
+     */
+    private final int columns;
+
+    /**
+     * the size(rows) of the board
+     */
+    private final int rows;
+
+    /**
+     * the pipe numbers, two cells per byte (the lower nibble is the cell with the even index)
+     */
+    private final byte[] pipeNumbers;
+
+    /**
+     * the filled state, one bit per cell
+     */
+    private final long[] filled;
+
+    /**
+     * Constructor for the board, all cells are unfilled wall pieces
+     *
+     * @param columns the size(columns) of the board
+     * @param rows the size(rows) of the board
+     */
+    PackedBoard(int columns, int rows) {
+        this.columns = columns;
+        this.rows = rows;
+        int size = columns * rows;
+        this.pipeNumbers = new byte[(size + 1) >> 1];
+        this.filled = new long[(size + 63) >> 6];
+    }
+
+    /**
+     * to get the columns of the board
+     *
+     * @return columns number
+     */
+    int getColumns() {
+        return columns;
+    }
+
+    /**
+     * to get the rows of the board
+     *
+     * @return rows number
+     */
+    int getRows() {
+        return rows;
+    }
+
+    /**
+     * to get the number of cells of the board
+     *
+     * @return columns * rows
+     */
+    int size() {
+        return columns * rows;
+    }
+
+    /**
+     * to get the row-major index of a cell
+     *
+     * @param x the column of the cell
+     * @param y the row of the cell
+     * @return the index of the cell
+     */
+    int index(int x, int y) {
+        return y * columns + x;
+    }
+
+    /**
+     * to get the index of the neighbour of a cell in the given direction
+     *
+     * @param index the index of the cell
+     * @param dir the direction of the neighbour
+     * @param overflow the overflow mode, in which the neighbours of the border cells are on the opposite border
+     * @return the index of the neighbour, or -1 if there is no neighbour
+     */
+    int neighbour(int index, Direction dir, boolean overflow) {
+        int x = index % columns;
+        int y = index / columns;
+        int toReturn = -1;
+
+        switch (dir) {
+            case TOP -> {
+                if (y > 0) toReturn = index - columns;
+                else if (overflow) toReturn = index + (rows - 1) * columns;
+            }
+            case BOTTOM -> {
+                if (y < rows - 1) toReturn = index + columns;
+                else if (overflow) toReturn = x;
+            }
+            case RIGHT -> {
+                if (x < columns - 1) toReturn = index + 1;
+                else if (overflow) toReturn = index - x;
+            }
+            case LEFT -> {
+                if (x > 0) toReturn = index - 1;
+                else if (overflow) toReturn = index + columns - 1;
+            }
+        }
+        return toReturn;
+    }
+
+    /**
+     * to check if a cell is connected to its neighbour in the given direction,
+     * which means both pipes are opened to each other
+     *
+     * @param index the index of the cell
+     * @param dir the direction to check
+     * @param overflow the overflow mode
+     * @return the index of the connected neighbour, or -1 if not connected
+     */
+    int connectedNeighbour(int index, Direction dir, boolean overflow) {
+        int toReturn = -1;
+        if ((getPipeNumber(index) & dir.getBit()) != 0) {
+            int neighbour = neighbour(index, dir, overflow);
+            if ((neighbour >= 0) && ((getPipeNumber(neighbour) & dir.opposite().getBit()) != 0))
+                toReturn = neighbour;
+        }
+        return toReturn;
+    }
+
+    /**
+     * to get the pipe number of a cell
+     *
+     * @param index the index of the cell
+     * @return the pipe number (0 - 15)
+     */
+    int getPipeNumber(int index) {
+        return (pipeNumbers[index >> 1] >> ((index & 1) << 2)) & 0xF;
+    }
+
+    /**
+     * to set the pipe number of a cell
+     *
+     * @param index the index of the cell
+     * @param pipeNumber the pipe number (0 - 15)
+     */
+    void setPipeNumber(int index, int pipeNumber) {
+        int shift = (index & 1) << 2;
+        int i = index >> 1;
+        pipeNumbers[i] = (byte) ((pipeNumbers[i] & ~(0xF << shift)) | ((pipeNumber & 0xF) << shift));
+    }
+
+    /**
+     * to get the filled state of a cell
+     *
+     * @param index the index of the cell
+     * @return true, is filled; false, is not filled
+     */
+    boolean isFilled(int index) {
+        return (filled[index >> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * to set the filled state of a cell
+     *
+     * @param index the index of the cell
+     * @param isFilled the new filled state
+     */
+    void setFilled(int index, boolean isFilled) {
+        if (isFilled)
+            filled[index >> 6] |= (1L << index);
+        else
+            filled[index >> 6] &= ~(1L << index);
+    }
+
+    /**
+     * to find the next filled cell
+     *
+     * @param from the index of the first cell to check
+     * @return the index of the next filled cell, or -1 if there is none
+     */
+    int nextFilled(int from) {
+        int toReturn = -1;
+        int word = from >> 6;
+        if (word < filled.length) {
+            long bits = filled[word] & (-1L << from);
+            while ((bits == 0) && (++word < filled.length)) {
+                bits = filled[word];
+            }
+            if (bits != 0) toReturn = (word << 6) + Long.numberOfTrailingZeros(bits);
+        }
+        return toReturn;
+    }
+
+    /**
+     * to clear the filled state of all cells
+     */
+    void clearFilled() {
+        Arrays.fill(filled, 0L);
+    }
+
+    /**
+     * to get the packed pipe numbers, two cells per byte in the order of the cell indexes
+     *
+     * @return a read-only buffer over the packed pipe numbers
+     */
+    ByteBuffer getPackedPipeNumbers() {
+        return ByteBuffer.wrap(pipeNumbers).asReadOnlyBuffer();
+    }
+
+    /**
+     * to set the pipe numbers of all cells from packed pipe numbers, all cells become unfilled
+     *
+     * @param packedPipeNumbers the packed pipe numbers, two cells per byte in the order of the cell indexes
+     */
+    void setPackedPipeNumbers(ByteBuffer packedPipeNumbers) {
+        packedPipeNumbers.get(pipeNumbers);
+        clearFilled();
+    }
+
+    /**
+     * to copy the pipe numbers and the filled states of another board of the same size
+     *
+     * @param other the board to copy
+     */
+    void copyFrom(PackedBoard other) {
+        System.arraycopy(other.pipeNumbers, 0, pipeNumbers, 0, pipeNumbers.length);
+        System.arraycopy(other.filled, 0, filled, 0, filled.length);
+    }
+
+    /**
+     * to set all cells as unfilled wall pieces
+     */
+    void clear() {
+        Arrays.fill(pipeNumbers, (byte) 0);
+        clearFilled();
+    }
+}
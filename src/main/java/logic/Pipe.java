@@ -9,14 +9,10 @@ package logic;
 public class Pipe {
 
     /**
-     * the pipe type(wall, end pipe, curve pipe, straight pipe or t pipe)
+     * the shape of the pipe, which is the pipe type(wall, end pipe, curve pipe, straight pipe or t pipe)
+     * with the angle of rotation
      */
-    private PipeType pipeType;
-
-    /**
-     * the angle of rotation
-     */
-    private Rotation rotation;
+    private PipeShape shape;
 
     /**
      * is the pipe Filled or not
@@ -28,9 +24,7 @@ public class Pipe {
      * Default is a wall piece
      */
     public Pipe(){
-        this.pipeType = PipeType.WALL;
-        this.rotation = Rotation.ZERO;
-        this.isFilled = false;
+        this(PipeType.WALL, Rotation.ZERO);
     }
 
     /**
@@ -40,9 +34,7 @@ public class Pipe {
      * @param pipeType the pipe type to be set
      */
     public Pipe(PipeType pipeType){
-        this.pipeType = pipeType;
-        this.rotation = Rotation.ZERO;
-        this.isFilled = false;
+        this(pipeType, Rotation.ZERO);
     }
 
     /**
@@ -53,8 +45,7 @@ public class Pipe {
      * @param rotation the rotation of the pipe
      */
     public Pipe(PipeType pipeType,Rotation rotation){
-        this.pipeType = pipeType;
-        this.rotation = rotation;
+        this.shape = PipeShape.toPipeShape(pipeType, rotation);
         this.isFilled = false;
     }
 
@@ -68,23 +59,7 @@ public class Pipe {
      * @param pipeNumber the pipe number
      */
     public void setPipe(int pipeNumber){
-        switch (pipeNumber) {
-            case 1 -> setPipe(PipeType.END_PIPE, Rotation.ZERO);
-            case 2 -> setPipe(PipeType.END_PIPE, Rotation.NINETY);
-            case 3 -> setPipe(PipeType.CURVE_PIPE, Rotation.ZERO);
-            case 4 -> setPipe(PipeType.END_PIPE, Rotation.ONE_EIGHTY);
-            case 5 -> setPipe(PipeType.STRAIGHT_PIPE, Rotation.ZERO);
-            case 6 -> setPipe(PipeType.CURVE_PIPE, Rotation.NINETY);
-            case 7 -> setPipe(PipeType.T_PIPE, Rotation.ZERO);
-            case 8 -> setPipe(PipeType.END_PIPE, Rotation.TWO_SEVENTY);
-            case 9 -> setPipe(PipeType.CURVE_PIPE, Rotation.TWO_SEVENTY);
-            case 10 -> setPipe(PipeType.STRAIGHT_PIPE, Rotation.NINETY);
-            case 11 -> setPipe(PipeType.T_PIPE, Rotation.TWO_SEVENTY);
-            case 12 -> setPipe(PipeType.CURVE_PIPE, Rotation.ONE_EIGHTY);
-            case 13 -> setPipe(PipeType.T_PIPE, Rotation.ONE_EIGHTY);
-            case 14 -> setPipe(PipeType.T_PIPE, Rotation.NINETY);
-            default -> setPipe(PipeType.WALL, Rotation.ZERO);
-        }
+        setShape(PipeShape.toPipeShape(pipeNumber));
     }
 
     /**
@@ -94,8 +69,7 @@ public class Pipe {
      * @param rotation the angle of rotation
      */
     public void setPipe(PipeType pipeType, Rotation rotation){
-        this.pipeType = pipeType;
-        this.rotation = rotation;
+        setShape(PipeShape.toPipeShape(pipeType, rotation));
     }
 
     /**
@@ -104,7 +78,7 @@ public class Pipe {
      * @param pipeType the pipe type
      */
     public void setPipeType(PipeType pipeType) {
-        this.pipeType = pipeType;
+        setPipe(pipeType, getShape().getRotation());
     }
 
     /**
@@ -113,7 +87,7 @@ public class Pipe {
      * @param rotation the angle of rotation
      */
     public void setRotation(Rotation rotation) {
-        this.rotation = rotation;
+        setPipe(getShape().getPipeType(), rotation);
     }
 
     /**
@@ -131,7 +105,7 @@ public class Pipe {
      * @return the pipe type
      */
     public PipeType getPipeType() {
-        return pipeType;
+        return getShape().getPipeType();
     }
 
     /**
@@ -144,14 +118,7 @@ public class Pipe {
      * @return the pipe number
      */
     public int getPipeNumber(){
-        int pipeNumber = 0;
-
-        if(isOpenToTop()) pipeNumber += 1;
-        if(isOpenToRight()) pipeNumber += 2;
-        if(isOpenToBottom()) pipeNumber += 4;
-        if(isOpenToLeft()) pipeNumber += 8;
-
-        return pipeNumber;
+        return getShape().getPipeNumber();
     }
 
     /**
@@ -161,8 +128,8 @@ public class Pipe {
      */
     public Rotation getRotation() {
         Rotation toReturn;
-        if (pipeType == PipeType.WALL) toReturn = Rotation.ZERO;
-        else toReturn = rotation;
+        if (getPipeType() == PipeType.WALL) toReturn = Rotation.ZERO;
+        else toReturn = getShape().getRotation();
 
         return toReturn;
     }
@@ -176,24 +143,36 @@ public class Pipe {
         return isFilled;
     }
 
+    /**
+     * to get the shape of the pipe
+     *
+     * @return the shape
+     */
+    PipeShape getShape() {
+        return shape;
+    }
+
+    /**
+     * to set the shape of the pipe
+     *
+     * @param shape the new shape
+     */
+    void setShape(PipeShape shape) {
+        this.shape = shape;
+    }
+
     /**
      * to rotate the pipe by 90 degree clockwise
      */
     public void clockwise(){
-        if (rotation == Rotation.TWO_SEVENTY) rotation = Rotation.ZERO;
-        else rotation = Rotation.toRotation((rotation.getValue() + 90));
-
-        if(pipeType == PipeType.STRAIGHT_PIPE) rotation = Rotation.toRotation(rotation.getValue()%180);
+        setShape(getShape().clockwise());
     }
 
     /**
      * to rotate the pipe by 90 degree counterclockwise
      */
     public void counterclockwise(){
-        if (rotation == Rotation.ZERO) rotation = Rotation.TWO_SEVENTY;
-        else rotation = Rotation.toRotation((rotation.getValue() - 90));
-
-        if(pipeType == PipeType.STRAIGHT_PIPE) rotation = Rotation.toRotation(rotation.getValue()%180);
+        setShape(getShape().counterclockwise());
     }
 
     /**
@@ -202,11 +181,7 @@ public class Pipe {
      * @param dir the direction
      */
     public void addOpenDirection(Direction dir){
-        int pipeNum = getPipeNumber();
-
-        pipeNum |= (int)Math.pow(2, dir.ordinal());
-
-        setPipe(pipeNum);
+        setPipe(getPipeNumber() | dir.getBit());
     }
 
     /**
@@ -215,7 +190,7 @@ public class Pipe {
      * @return true, if open to top; false, if not open to top
      */
     public boolean isOpenToTop(){
-        return checkOpens(Direction.TOP);
+        return getShape().isOpenTo(Direction.TOP);
     }
 
     /**
@@ -224,7 +199,7 @@ public class Pipe {
      * @return true, if open to right; false, if not open to right
      */
     public boolean isOpenToRight(){
-        return checkOpens(Direction.RIGHT);
+        return getShape().isOpenTo(Direction.RIGHT);
     }
 
     /**
@@ -233,7 +208,7 @@ public class Pipe {
      * @return true, if open to bottom; false, if not open to bottom
      */
     public boolean isOpenToBottom(){
-        return checkOpens(Direction.BOTTOM);
+        return getShape().isOpenTo(Direction.BOTTOM);
     }
 
     /**
@@ -242,42 +217,14 @@ public class Pipe {
      * @return true, if open to left; false, if not open to left
      */
     public boolean isOpenToLeft(){
-        return checkOpens(Direction.LEFT);
-    }
-
-    /**
-     * to check if the pipe is opened to top, bottom, right or left
-     *
-     @param dir the direction to check
-     */
-    private boolean checkOpens(Direction dir){
-        int dirDegree = 90*dir.ordinal();
-        boolean toReturn = false;
-
-        if ((pipeType == PipeType.END_PIPE)
-           &&(rotation.getValue() == dirDegree)){
-            toReturn = true;
-        }
-        else if ((pipeType == PipeType.CURVE_PIPE)
-                &&((rotation.getValue() == dirDegree)||(rotation.getValue() == (dirDegree+270)%360))){
-            toReturn = true;
-        }
-        else if ((pipeType == PipeType.STRAIGHT_PIPE)
-                &&((rotation.getValue() == dirDegree)||(rotation.getValue() == (dirDegree+180)%360))){
-            toReturn = true;
-        }
-        else if ((pipeType == PipeType.T_PIPE)
-                &&((rotation.getValue() == dirDegree)||(rotation.getValue() == (dirDegree+180)%360)||(rotation.getValue() == (dirDegree+270)%360))){
-            toReturn = true;
-        }
-        return toReturn;
+        return getShape().isOpenTo(Direction.LEFT);
     }
 
     @Override
     public String toString() {
         return "Pipe{" +
-                "pipeType=" + pipeType +
-                ", rotation=" + rotation +
+                "pipeType=" + getShape().getPipeType() +
+                ", rotation=" + getShape().getRotation() +
                 '}';
     }
 }
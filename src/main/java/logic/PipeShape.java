@@ -0,0 +1,210 @@
+package logic;
+
+/**
+ * The immutable shape of a pipe, which is a pipe type with a certain rotation.
+ * All shapes are created once and shared, the openings and the shapes after a rotation
+ * are precomputed, so that checking and rotating a pipe is a table lookup.
+ *
+ * @author LiChieh Chou
+ */
+final class PipeShape {
+    /**
+     * all shapes, indexed by pipe type and rotation
+     */
+    private static final PipeShape[] SHAPES = new PipeShape[PipeType.values().length * Rotation.values().length];
+
+    /**
+     * the canonical shapes, indexed by pipe number
+     */
+    private static final PipeShape[] SHAPES_BY_NUMBER = new PipeShape[16];
+
+    static {
+        for (PipeType pipeType : PipeType.values()) {
+            for (Rotation rotation : Rotation.values()) {
+                SHAPES[indexOf(pipeType, rotation)] = new PipeShape(pipeType, rotation);
+            }
+        }
+        for (PipeShape shape : SHAPES) {
+            shape.clockwise = SHAPES[indexOf(shape.pipeType, rotate(shape.pipeType, shape.rotation, 90))];
+            shape.counterclockwise = SHAPES[indexOf(shape.pipeType, rotate(shape.pipeType, shape.rotation, 270))];
+        }
+
+        SHAPES_BY_NUMBER[0] = toPipeShape(PipeType.WALL, Rotation.ZERO);
+        SHAPES_BY_NUMBER[15] = SHAPES_BY_NUMBER[0];
+        for (PipeType pipeType : PipeType.values()) {
+            for (Rotation rotation : Rotation.values()) {
+                PipeShape shape = toPipeShape(pipeType, rotation);
+                if (SHAPES_BY_NUMBER[shape.pipeNumber] == null)
+                    SHAPES_BY_NUMBER[shape.pipeNumber] = shape;
+            }
+        }
+    }
+
+    /**
+     * the pipe type
+     */
+    private final PipeType pipeType;
+
+    /**
+     * the angle of rotation
+     */
+    private final Rotation rotation;
+
+    /**
+     * the pipe number, see {@link Pipe#getPipeNumber()}
+     */
+    private final int pipeNumber;
+
+    /**
+     * the shape after a rotation by 90 degree clockwise
+     */
+    private PipeShape clockwise;
+
+    /**
+     * the shape after a rotation by 90 degree counterclockwise
+     */
+    private PipeShape counterclockwise;
+
+    private PipeShape(PipeType pipeType, Rotation rotation) {
+        this.pipeType = pipeType;
+        this.rotation = rotation;
+
+        int number = 0;
+        for (Direction dir : Direction.values()) {
+            if (checkOpens(pipeType, rotation, dir)) number |= dir.getBit();
+        }
+        this.pipeNumber = number;
+    }
+
+    /**
+     * to get the shape of a pipe type with a certain rotation
+     *
+     * @param pipeType the pipe type
+     * @param rotation the angle of rotation
+     * @return the shared shape
+     */
+    static PipeShape toPipeShape(PipeType pipeType, Rotation rotation) {
+        return SHAPES[indexOf(pipeType, rotation)];
+    }
+
+    /**
+     * to get the shape of a pipe number.
+     * Numbers without a matching pipe type are a wall piece.
+     *
+     * @param pipeNumber the pipe number
+     * @return the shared shape
+     */
+    static PipeShape toPipeShape(int pipeNumber) {
+        PipeShape toReturn = SHAPES_BY_NUMBER[0];
+        if ((pipeNumber >= 0) && (pipeNumber < SHAPES_BY_NUMBER.length))
+            toReturn = SHAPES_BY_NUMBER[pipeNumber];
+        return toReturn;
+    }
+
+    /**
+     * to get the pipe type
+     *
+     * @return the pipe type
+     */
+    PipeType getPipeType() {
+        return pipeType;
+    }
+
+    /**
+     * to get the angle of rotation
+     *
+     * @return the angle of rotation
+     */
+    Rotation getRotation() {
+        return rotation;
+    }
+
+    /**
+     * to get the pipe number
+     *
+     * @return the pipe number
+     */
+    int getPipeNumber() {
+        return pipeNumber;
+    }
+
+    /**
+     * to get the shape after a rotation by 90 degree clockwise
+     *
+     * @return the rotated shape
+     */
+    PipeShape clockwise() {
+        return clockwise;
+    }
+
+    /**
+     * to get the shape after a rotation by 90 degree counterclockwise
+     *
+     * @return the rotated shape
+     */
+    PipeShape counterclockwise() {
+        return counterclockwise;
+    }
+
+    /**
+     * to check if the shape is opened to a direction
+     *
+     * @param dir the direction to check
+     * @return true, if opened to the direction; false, if not
+     */
+    boolean isOpenTo(Direction dir) {
+        return (pipeNumber & dir.getBit()) != 0;
+    }
+
+    /**
+     * to get the index of a pipe type with a certain rotation in the shape table
+     */
+    private static int indexOf(PipeType pipeType, Rotation rotation) {
+        return pipeType.ordinal() * Rotation.values().length + rotation.ordinal();
+    }
+
+    /**
+     * to rotate a pipe type with a certain rotation by the given degree
+     * (straight pipes only use 0 and 90 degree)
+     */
+    private static Rotation rotate(PipeType pipeType, Rotation rotation, int degree) {
+        int value = (rotation.getValue() + degree) % 360;
+        if (pipeType == PipeType.STRAIGHT_PIPE) value %= 180;
+        return Rotation.toRotation(value);
+    }
+
+    /**
+     * to check if a pipe type with a certain rotation is opened to top, bottom, right or left
+     *
+     * @param pipeType the pipe type
+     * @param rotation the angle of rotation
+     * @param dir the direction to check
+     */
+    private static boolean checkOpens(PipeType pipeType, Rotation rotation, Direction dir){
+        int dirDegree = 90*dir.ordinal();
+        boolean toReturn = false;
+
+        if ((pipeType == PipeType.END_PIPE)
+           &&(rotation.getValue() == dirDegree)){
+            toReturn = true;
+        }
+        else if ((pipeType == PipeType.CURVE_PIPE)
+                &&((rotation.getValue() == dirDegree)||(rotation.getValue() == (dirDegree+270)%360))){
+            toReturn = true;
+        }
+        else if ((pipeType == PipeType.STRAIGHT_PIPE)
+                &&((rotation.getValue() == dirDegree)||(rotation.getValue() == (dirDegree+180)%360))){
+            toReturn = true;
+        }
+        else if ((pipeType == PipeType.T_PIPE)
+                &&((rotation.getValue() == dirDegree)||(rotation.getValue() == (dirDegree+180)%360)||(rotation.getValue() == (dirDegree+270)%360))){
+            toReturn = true;
+        }
+        return toReturn;
+    }
+
+    @Override
+    public String toString() {
+        return pipeType + "/" + rotation;
+    }
+}
@@ -0,0 +1,55 @@
+package logic;
+
+/**
+ * A Pipe that is a view of a cell of a {@link PlayField}.
+ * Reading the view reads the cell, changing the view changes the cell.
+ *
+ * @author LiChieh Chou
+ */
+final class PipeView extends Pipe {
+    /**
+     * the play field that contains the cell
+     */
+    private final PlayField playField;
+
+    /**
+     * the index of the cell on the play field
+     */
+    private final int index;
+
+    /**
+     * Constructor for the view of a cell
+     *
+     * @param playField the play field that contains the cell
+     * @param index the index of the cell on the play field
+     */
+    PipeView(PlayField playField, int index) {
+        this.playField = playField;
+        this.index = index;
+    }
+
+    @Override
+    PipeShape getShape() {
+        return PipeShape.toPipeShape(playField.getPipeNumber(index));
+    }
+
+    @Override
+    void setShape(PipeShape shape) {
+        playField.setPipeNumber(index, shape.getPipeNumber());
+    }
+
+    @Override
+    public int getPipeNumber() {
+        return playField.getPipeNumber(index);
+    }
+
+    @Override
+    public void setFilled(boolean Filled) {
+        playField.setFilled(index, Filled);
+    }
+
+    @Override
+    public boolean getIsFilled() {
+        return playField.isFilled(index);
+    }
+}
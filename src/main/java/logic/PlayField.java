@@ -1,6 +1,9 @@
 package logic;
 
-import java.util.Random;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * the class for the play field on which the player play
@@ -8,20 +11,56 @@ import java.util.Random;
  * @author LiChieh Chou
  */
 public class PlayField {
+    /**
+     * the order in which the neighbours of a filled pipe are filled
+     */
+    private static final Direction[] FILL_DIRECTIONS = {Direction.TOP, Direction.BOTTOM, Direction.RIGHT, Direction.LEFT};
+
     /**
      * the source position
      */
     private Position sourcePos;
 
+    /**
+     * the seed from which the play field was generated, or null if it was not generated
+     */
+    private Long seed;
+
+    /**
+     * the max allowed percentage of wall pieces with which the play field was generated
+     */
+    private int percentageOfWall;
+
     /**
      * the overflow mode
      */
     private boolean overflow;
 
     /**
-     * The 2-dimensional field on which the player play.
+     * The field on which the player play,
+     * stored as the pipe number and the filled state of each cell.
      */
-    private Pipe[][] field;
+    private final PackedBoard board;
+
+    /**
+     * the connected pipes, kept up-to-date while the pipes are changed
+     */
+    private final Connectivity connectivity;
+
+    /**
+     * the filled pipes from which the next pipe may be filled
+     */
+    private final FillFrontier frontier;
+
+    /**
+     * the number of openings on the field which are not connected to another pipe
+     */
+    private int openEnds;
+
+    /**
+     * the number of pieces on the field which are not wall pieces
+     */
+    private int nonWallPieces;
 
     /**
      * Constructor for the play field
@@ -33,7 +72,30 @@ public class PlayField {
     PlayField(int columns, int rows, boolean overflow){
         this.sourcePos = null;
         this.overflow = overflow;
-        this.field = new Pipe[columns][rows];
+        this.board = new PackedBoard(columns, rows);
+        this.connectivity = new Connectivity(board, overflow);
+        this.frontier = new FillFrontier(columns, rows);
+        this.openEnds = 0;
+        this.nonWallPieces = 0;
+    }
+
+    /**
+     * to get a copy of the play field, which is not changed when this play field is changed,
+     * e.g. to save the play field on another thread while the game goes on
+     *
+     * @return the copy
+     */
+    PlayField copy(){
+        PlayField toReturn = new PlayField(getColumns(), getRows(), overflow);
+        toReturn.board.copyFrom(board);
+        toReturn.sourcePos = sourcePos;
+        toReturn.seed = seed;
+        toReturn.percentageOfWall = percentageOfWall;
+        toReturn.openEnds = openEnds;
+        toReturn.nonWallPieces = nonWallPieces;
+        toReturn.connectivity.invalidate();
+        toReturn.rebuildFrontier();
+        return toReturn;
     }
 
     /**
@@ -45,6 +107,37 @@ public class PlayField {
         return sourcePos;
     }
 
+    /**
+     * to get the seed from which the play field was generated.
+     * Together with the size, the percentage of wall pieces and the overflow mode
+     * the generated play field can be created again, see {@link #createPuzzle}.
+     *
+     * @return the seed, or null if the play field was not generated
+     */
+    public Long getSeed() {
+        return seed;
+    }
+
+    /**
+     * to get the max allowed percentage of wall pieces with which the play field was generated
+     *
+     * @return the percentage of wall pieces
+     */
+    public int getPercentageOfWall() {
+        return percentageOfWall;
+    }
+
+    /**
+     * to set the seed and the percentage of wall pieces from which the play field was generated
+     *
+     * @param seed the seed, or null if the play field was not generated
+     * @param percentageOfWall the max allowed percentage of wall pieces
+     */
+    void setSeed(Long seed, int percentageOfWall) {
+        this.seed = seed;
+        this.percentageOfWall = percentageOfWall;
+    }
+
     /**
      * to get the overflow mode value
      *
@@ -62,7 +155,7 @@ public class PlayField {
      */
     public Pipe getField(Position pos) {
         if(pos != null)
-            return field[pos.getX()][pos.getY()];
+            return new PipeView(this, indexOf(pos));
         else
             return null;
     }
@@ -72,7 +165,7 @@ public class PlayField {
      * @return columns number
      */
     public int getColumns(){
-        return field.length;
+        return board.getColumns();
     }
 
     /**
@@ -80,7 +173,7 @@ public class PlayField {
      * @return rows number
      */
     public int getRows(){
-        return field[0].length;
+        return board.getRows();
     }
 
     /**
@@ -99,212 +192,104 @@ public class PlayField {
      */
     public void setOverflow(boolean overflow) {
         this.overflow = overflow;
+        connectivity.setOverflow(overflow);
+        rebuildFrontier();
+        countOpenEnds();
 
         checkAllPipesReachableFromSource();
     }
 
     /**
-     * to set the Pipe for a certain position on the current playing field
+     * to set the Pipe for a certain position on the current playing field.
+     * The pipe type, rotation and filled state of the given pipe are copied into the field.
      *
      * @param pos the position in which the pipe to be set
      * @param pipe the pipe to be set
      */
     public void setField(Position pos, Pipe pipe){
-        field[pos.getX()][pos.getY()] = pipe;
+        int index = indexOf(pos);
+        setPipeNumber(index, pipe.getPipeNumber());
+        setFilled(index, pipe.getIsFilled());
     }
 
     /**
-     * to create a solvable play field
+     * to create a generated and mixed play field, which is the same for the same arguments
      *
+     * @param columns the size(columns) of the play field
+     * @param rows the size(rows) of the play field
+     * @param overflow overflow mode
      * @param percentageOfWall the max allowed percentage of wall pieces
+     * @param seed the seed for the generation and the mix
+     * @return the play field
      */
-    public void generatePlayField(int percentageOfWall){
-        int MaxWallPieces = ((getColumns() * getRows() * percentageOfWall)/100);
-
-        int sX = (int) (Math.random() * getColumns());
-        int sY = (int) (Math.random() * getRows());
-        setSourcePos(new Position(sX, sY));
-
-        do {
-            for (int i = 0;i < getColumns();i++){
-                for (int j = 0;j < getRows();j++){
-                    setField(new Position(i,j),new Pipe(PipeType.WALL));
-                }
-            }
-
-            boolean[][] isChecked = new boolean[getColumns()][getRows()];
-            Position pos;
-            do {
-                pos = findAPositionAvailableToAddConnection();
-                if (pos != null) {
-                    isChecked[pos.getX()][pos.getY()] = false;
-                    generatePlayFieldRecursion(pos, isChecked, percentageOfWall);
-                }
-            }while ((countWallPieces() > MaxWallPieces) && (pos != null));
-        }while((countWallPieces() > MaxWallPieces) || (!checkOpenEnd()));
-    }
-
-    /**
-     * This method generates a play field for the game using recursion.
-     *
-     * @param pos the current position of the playfield to be filled with a pipe.
-     * @param isChecked a boolean matrix used to check if a position has already been checked.
-     * @param percentageOfWall the percentage of walls in the playfield.
-     */
-    private void generatePlayFieldRecursion(Position pos, boolean[][] isChecked, int percentageOfWall){
-        if(pos == null) return;
-        if(!isChecked[pos.getX()][pos.getY()]) {
-            isChecked[pos.getX()][pos.getY()] = true;
-
-            Random rand = new Random();
-            Pipe newPipe;
-            do{
-                int pipeTypeOrd = 1;
-                if(rand.nextInt(100)>percentageOfWall){
-                    pipeTypeOrd = rand.nextInt(3) + 2;
-                }
-                int rotOrd = rand.nextInt(4);
-                newPipe = new Pipe(PipeType.values()[pipeTypeOrd], Rotation.values()[rotOrd]);
-                setField(pos, newPipe);
-
-            }while (!checkIfPipeFitAtThisPosition(pos, isChecked) && checkIsPossibleToFindAFitPipe(pos));
-
-            if(newPipe.isOpenToTop()) generatePlayFieldRecursion(getUpperPos(pos), isChecked, percentageOfWall);
-            if(newPipe.isOpenToBottom()) generatePlayFieldRecursion(getDownPos(pos), isChecked, percentageOfWall);
-            if(newPipe.isOpenToRight()) generatePlayFieldRecursion(getRightPos(pos), isChecked, percentageOfWall);
-            if(newPipe.isOpenToLeft()) generatePlayFieldRecursion(getLeftPos(pos), isChecked, percentageOfWall);
-        }
+    static PlayField createPuzzle(int columns, int rows, boolean overflow, int percentageOfWall, long seed){
+        PlayField toReturn = new PlayField(columns, rows, overflow);
+        toReturn.generatePlayField(percentageOfWall, seed);
+        toReturn.mix(seed);
+        return toReturn;
     }
 
     /**
-     * This method is used to check if it is possible to find a fit pipe for the given position on the game field.
+     * to create a generated and mixed play field with the scratch buffers of the given generator,
+     * which can be used again for the next play field of the same size
      *
-     * @param pos The position on the game field to check for a fit pipe.
-     * @return A boolean value indicating whether it is possible to find a fit pipe for the given position or not.
-     */
-    private boolean checkIsPossibleToFindAFitPipe(Position pos){
-        boolean toReturn = true;
-
-        Position upperPos = getUpperPos(pos);
-        Position downPos = getDownPos(pos);
-        Position rightPos = getRightPos(pos);
-        Position leftPos = getLeftPos(pos);
-
-        if((upperPos != null)&&(downPos != null)&&(rightPos != null)&&(leftPos != null))
-        {
-            if(getField(upperPos).isOpenToBottom()
-                    && getField(downPos).isOpenToTop()
-                    && getField(rightPos).isOpenToLeft()
-                    && getField(leftPos).isOpenToRight())
-                toReturn = false;
-        }
-
+     * @param columns the size(columns) of the play field
+     * @param rows the size(rows) of the play field
+     * @param overflow overflow mode
+     * @param percentageOfWall the max allowed percentage of wall pieces
+     * @param seed the seed for the generation and the mix
+     * @param generator the generator for play fields of this size and overflow mode
+     * @return the play field
+     */
+    static PlayField createPuzzle(int columns, int rows, boolean overflow, int percentageOfWall, long seed,
+                                  PlayFieldGenerator generator){
+        PlayField toReturn = new PlayField(columns, rows, overflow);
+        toReturn.generatePlayField(percentageOfWall, seed, generator);
+        toReturn.mix(seed);
         return toReturn;
     }
 
     /**
-     * Checks if a pipe can fit in a given position in the playfield.
+     * to create a solvable play field from a random seed
      *
-     * @param pos The position in the playfield to check.
-     * @param isChecked A 2D boolean array representing whether each position in the playfield has already been checked.
-     * @return true if a pipe can fit in the given position, false otherwise.
+     * @param percentageOfWall the max allowed percentage of wall pieces
      */
-    private boolean checkIfPipeFitAtThisPosition(Position pos, boolean[][] isChecked){
-        boolean toReturn = true;
-
-        Position pos2;
-
-        pos2 = getUpperPos(pos);
-        if(pos2 == null){
-            if(getField(pos).isOpenToTop()) toReturn = false;
-        }
-        else if(isChecked[pos2.getX()][pos2.getY()]){
-            if((getField(pos).isOpenToTop() && (!isConnectedToTop(pos)))
-                    || (getField(pos2).isOpenToBottom() && (!isConnectedToBottom(pos2)))) toReturn = false;
-        }
-
-        pos2 = getDownPos(pos);
-        if(pos2 == null){
-            if(getField(pos).isOpenToBottom()) toReturn = false;
-        }
-        else if(isChecked[pos2.getX()][pos2.getY()]){
-            if((getField(pos).isOpenToBottom() && (!isConnectedToBottom(pos)))
-                    || (getField(pos2).isOpenToTop() && (!isConnectedToTop(pos2)))) toReturn = false;
-        }
-
-        pos2 = getRightPos(pos);
-        if(pos2 == null){
-            if(getField(pos).isOpenToRight()) toReturn = false;
-        }
-        else if(isChecked[pos2.getX()][pos2.getY()]){
-            if((getField(pos).isOpenToRight() && (!isConnectedToRight(pos)))
-                    || (getField(pos2).isOpenToLeft() && (!isConnectedToLeft(pos2)))) toReturn = false;
-        }
-
-        pos2 = getLeftPos(pos);
-        if(pos2 == null){
-            if(getField(pos).isOpenToLeft()) toReturn = false;
-        }
-        else if(isChecked[pos2.getX()][pos2.getY()]){
-            if((getField(pos).isOpenToLeft() && (!isConnectedToLeft(pos)))
-                    || (getField(pos2).isOpenToRight() && (!isConnectedToRight(pos2)))) toReturn = false;
-        }
-
-        return toReturn;
+    public void generatePlayField(int percentageOfWall){
+        generatePlayField(percentageOfWall, ThreadLocalRandom.current().nextLong());
     }
 
     /**
-     * to count how many wall pieces are on the play field
+     * to create a solvable play field, which is the same for the same seed.
+     * The pipes are a random spanning tree grown from the source, see {@link PlayFieldGenerator},
+     * so the play field is created in linear time and has exactly the allowed number of wall pieces.
      *
-     * @return the number of the wall pieces
+     * @param percentageOfWall the max allowed percentage of wall pieces
+     * @param seed the seed of the random generator
      */
-    private int countWallPieces(){
-        int counter = 0;
-        for(int i = 0;i < getColumns();i++){
-            for(int j = 0;j < getRows();j++){
-                if(getField(new Position(i,j)).getPipeType() == PipeType.WALL)
-                    counter++;
-            }
-        }
-        return counter;
+    public void generatePlayField(int percentageOfWall, long seed){
+        generatePlayField(percentageOfWall, seed, new PlayFieldGenerator(board, overflow));
     }
 
     /**
-     * Finds a position available to add a connection.
+     * to create a solvable play field, which is the same for the same seed,
+     * with the scratch buffers of the given generator
      *
-     * @return The position available to add a connection, or null if none is found.
+     * @param percentageOfWall the max allowed percentage of wall pieces
+     * @param seed the seed of the random generator
+     * @param generator the generator for play fields of this size and overflow mode
      */
-    private Position findAPositionAvailableToAddConnection(){
-        Position toReturn = null;
+    void generatePlayField(int percentageOfWall, long seed, PlayFieldGenerator generator){
+        int maxWallPieces = ((board.size() * percentageOfWall)/100);
+        int pieces = Math.min(board.size(), Math.max(2, board.size() - maxWallPieces));
 
-        if(getField(sourcePos).getPipeType() == PipeType.WALL)
-            toReturn = sourcePos;
+        SplittableRandom rand = new SplittableRandom(seed);
+        int source = rand.nextInt(board.size());
+        byte[] pipeNumbers = generator.generate(source, pieces, rand);
 
-        for(int i = 0;((i < getColumns())&&(toReturn == null));i++){
-            for(int j = 0;((j < getRows())&&(toReturn == null));j++){
-                Position pos = new Position(i,j);
-                if((getField(pos).getPipeType() != PipeType.WALL)
-                        &&((getField(pos)).getPipeType() != PipeType.T_PIPE)){
-                    if(getUpperPos(pos) != null){
-                        if(getField(getUpperPos(pos)).getPipeType() == PipeType.WALL)
-                            toReturn = pos;
-                    }
-                    if(getDownPos(pos) != null){
-                        if(getField(getDownPos(pos)).getPipeType() == PipeType.WALL)
-                            toReturn = pos;
-                    }
-                    if(getRightPos(pos) != null){
-                        if(getField(getRightPos(pos)).getPipeType() == PipeType.WALL)
-                            toReturn = pos;
-                    }
-                    if(getLeftPos(pos) != null){
-                        if(getField(getLeftPos(pos)).getPipeType() == PipeType.WALL)
-                            toReturn = pos;
-                    }
-                }
-            }
-        }
-        return toReturn;
+        setAllCellsAsWallPieces();
+        setPipeNumbers(pipeNumbers);
+        setSourcePos(toPosition(source));
+        setSeed(seed, percentageOfWall);
     }
 
     /**
@@ -314,78 +299,165 @@ public class PlayField {
      * @param direction the direction of rotation
      */
     public void rotation(Position pos, boolean direction){
+        int index = indexOf(pos);
+        PipeShape shape = PipeShape.toPipeShape(board.getPipeNumber(index));
         if (direction)
-            field[pos.getX()][pos.getY()].counterclockwise();
+            setPipeNumber(index, shape.counterclockwise().getPipeNumber());
         else
-            field[pos.getX()][pos.getY()].clockwise();
+            setPipeNumber(index, shape.clockwise().getPipeNumber());
     }
 
     /**
-     * to mix the play field
+     * to mix the play field with a random seed
      * (each cell will be rotated by a random number of turns)
      */
     public void mix(){
+        mix(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * to mix the play field, in the same way for the same seed.
+     * The turns are taken from a generator split off the seed,
+     * so they are independent of the generation from the same seed.
+     *
+     * @param seed the seed of the random generator
+     */
+    public void mix(long seed){
+        SplittableRandom rand = new SplittableRandom(seed).split();
+
+        // the board is written directly, the connectivity, the frontier and the open ends are rebuilt once afterwards
+        connectivity.invalidate();
         for(int i = 0;i < getColumns();i++){
             for(int j = 0;j < getRows();j++){
-                double r = Math.random()*4;
-                Position pos = new Position(i,j);
-                Pipe pipe = getField(pos);
-                pipe.setRotation(Rotation.toRotation((int)r*90));
-                setField(pos,pipe);
+                int index = board.index(i, j);
+                PipeType pipeType = PipeShape.toPipeShape(board.getPipeNumber(index)).getPipeType();
+                Rotation rotation = Rotation.toRotation(rand.nextInt(4)*90);
+                board.setPipeNumber(index, PipeShape.toPipeShape(pipeType, rotation).getPipeNumber());
             }
         }
+        rebuildFrontier();
+        countOpenEnds();
     }
 
     /**
-     * This function is called by the timer, which will automatically fill the next pipe
+     * This function is called by the timer, which will automatically fill the next pipe.
+     * The next pipe is the first unfilled pipe (top, bottom, right, left) connected to
+     * the first filled pipe of the frontier.
      *
      * @return a position where the pipe is filled
      */
     public Position findNextFillablePipe(){
         Position toReturn = null;
 
-        if(!getField(sourcePos).getIsFilled()){
-            field[sourcePos.getX()][sourcePos.getY()].setFilled(true);
+        if(!isFilled(sourcePos)){
+            setFilled(indexOf(sourcePos), true);
             toReturn = sourcePos;
         } else {
+            int next = -1;
+            while ((next < 0) && (frontier.peek() >= 0)) {
+                next = findUnfilledConnectedNeighbour(frontier.peek());
+                if (next < 0) frontier.poll();
+            }
+            if (next >= 0) {
+                setFilled(next, true);
+                toReturn = toPosition(next);
+            }
+        }
+        return toReturn;
+    }
 
-            for(int i = 0;((i < getColumns())&&(toReturn == null));i++){
-                for(int j = 0;((j < getRows())&&(toReturn == null));j++){
-                    Position pos = new Position(i,j);
-                    if(getField(pos).getIsFilled()){
-                        if ((isConnectedToTop(pos))&&(!getField(getUpperPos(pos)).getIsFilled())) {
-                            getField(getUpperPos(pos)).setFilled(true);
-                            toReturn = getUpperPos(pos);
-                        }
-                        else if ((isConnectedToBottom(pos))&&(!getField(getDownPos(pos)).getIsFilled())) {
-                            getField(getDownPos(pos)).setFilled(true);
-                            toReturn = getDownPos(pos);
-                        }
-                        else if ((isConnectedToRight(pos))&&(!getField(getRightPos(pos)).getIsFilled())) {
-                            getField(getRightPos(pos)).setFilled(true);
-                            toReturn = getRightPos(pos);
-                        }
-                        else if ((isConnectedToLeft(pos))&&(!getField(getLeftPos(pos)).getIsFilled())) {
-                            getField(getLeftPos(pos)).setFilled(true);
-                            toReturn = getLeftPos(pos);
-                        }
-                    }
+    /**
+     * to find the first unfilled pipe (top, bottom, right, left) which is connected to a filled pipe
+     *
+     * @param index the index of the pipe
+     * @return the index of the unfilled connected pipe, or -1 if the pipe is not filled or there is none
+     */
+    private int findUnfilledConnectedNeighbour(int index){
+        int toReturn = -1;
+        if (board.isFilled(index)) {
+            for (Direction dir : FILL_DIRECTIONS) {
+                int neighbour = board.connectedNeighbour(index, dir, overflow);
+                if ((neighbour >= 0) && (!board.isFilled(neighbour))) {
+                    toReturn = neighbour;
+                    break;
                 }
             }
         }
         return toReturn;
     }
 
+    /**
+     * to add all filled pipes to the frontier again
+     */
+    private void rebuildFrontier(){
+        frontier.clear();
+        for (int i = board.nextFilled(0); i >= 0; i = board.nextFilled(i + 1)) {
+            frontier.add(i);
+        }
+    }
+
+    /**
+     * to set the pipe numbers of all cells at once, the filled state of all cells is cleared.
+     * The board is written directly, the connectivity, the frontier and the counters are rebuilt once afterwards.
+     *
+     * @param pipeNumbers the pipe number of each cell, in the order of the cell indexes
+     */
+    void setPipeNumbers(byte[] pipeNumbers){
+        board.clear();
+        for (int index = 0; index < pipeNumbers.length; index++) {
+            board.setPipeNumber(index, pipeNumbers[index]);
+        }
+        rebuildAfterBoardChanged();
+    }
+
+    /**
+     * to set the pipe numbers of all cells at once from packed pipe numbers, the filled state of all cells is cleared.
+     * Invalid pipe numbers become wall pieces.
+     *
+     * @param packedPipeNumbers the pipe numbers, two cells per byte in the order of the cell indexes
+     */
+    void setPackedPipeNumbers(ByteBuffer packedPipeNumbers){
+        board.setPackedPipeNumbers(packedPipeNumbers);
+        rebuildAfterBoardChanged();
+    }
+
+    /**
+     * to get the pipe numbers of all cells
+     *
+     * @return a read-only buffer with the pipe numbers, two cells per byte in the order of the cell indexes
+     */
+    ByteBuffer getPackedPipeNumbers(){
+        return board.getPackedPipeNumbers();
+    }
+
+    /**
+     * to rebuild the connectivity, the frontier and the counters after the board was written directly
+     */
+    private void rebuildAfterBoardChanged(){
+        connectivity.invalidate();
+        frontier.clear();
+        nonWallPieces = 0;
+        for (int index = 0; index < board.size(); index++) {
+            int pipeNumber = board.getPipeNumber(index);
+            if (PipeShape.toPipeShape(pipeNumber).getPipeNumber() != pipeNumber)
+                board.setPipeNumber(index, 0);
+            else if (pipeNumber != 0)
+                nonWallPieces++;
+        }
+        countOpenEnds();
+    }
+
     /**
      * to set all cells as wall pieces
      */
     public void setAllCellsAsWallPieces(){
-        for (int i = 0;i < getColumns();i++){
-            for (int j = 0;j < getRows();j++){
-                setField(new Position(i,j),new Pipe(PipeType.values()[0],Rotation.ZERO));
-            }
-        }
+        board.clear();
+        connectivity.invalidate();
+        frontier.clear();
+        openEnds = 0;
+        nonWallPieces = 0;
         setSourcePos(null);
+        setSeed(null, 0);
     }
 
     /**
@@ -393,12 +465,8 @@ public class PlayField {
      *
      */
     public void clearAllPipesFilledState(){
-        for (int i = 0; i < getColumns(); i++) {
-            for (int j = 0; j < getRows(); j++) {
-                Position pos = new Position(i,j);
-                getField(pos).setFilled(false);
-            }
-        }
+        board.clearFilled();
+        frontier.clear();
     }
 
     /**
@@ -409,13 +477,11 @@ public class PlayField {
     public Position clearOneUnConnectedPipeFilledState(){
         Position toReturn = null;
         if(sourcePos != null) {
-            boolean[][] isChecked = new boolean[getColumns()][getRows()];
-            checkConnection(sourcePos, isChecked);
             for (int i = 0; i < getColumns() && toReturn == null; i++) {
                 for (int j = 0; j < getRows() && toReturn == null; j++) {
                     Position pos = new Position(i, j);
-                    if ((!isChecked[i][j]) && (getField(pos).getPipeType() != PipeType.WALL) && (getField(pos).getIsFilled())) {
-                        getField(pos).setFilled(false);
+                    if ((!isReachableFromSource(pos)) && (getPipeNumber(pos) != 0) && (isFilled(pos))) {
+                        setFilled(indexOf(pos), false);
                         toReturn = pos;
                     }
                 }
@@ -424,6 +490,29 @@ public class PlayField {
         return toReturn;
     }
 
+    /**
+     * to clear the Filling state for all pipes that are not connected to the source
+     *
+     * @return the indices (see {@link #toPosition(int)}) of the pipes of which the filled state is cleared
+     */
+    public int[] clearUnConnectedPipesFilledState(){
+        int[] cleared = new int[0];
+        if(sourcePos != null) {
+            int count = 0;
+            cleared = new int[16];
+            int source = indexOf(sourcePos);
+            for (int i = board.nextFilled(0); i >= 0; i = board.nextFilled(i + 1)) {
+                if ((i != source) && (!connectivity.isConnected(source, i)) && (board.getPipeNumber(i) != 0)) {
+                    setFilled(i, false);
+                    if (count == cleared.length) cleared = Arrays.copyOf(cleared, count * 2);
+                    cleared[count++] = i;
+                }
+            }
+            cleared = Arrays.copyOf(cleared, count);
+        }
+        return cleared;
+    }
+
     /**
      * to check are all pipes are reachable from the source
      *
@@ -434,48 +523,22 @@ public class PlayField {
         boolean toReturn = true;
 
         if(sourcePos != null) {
-            boolean[][] isChecked = new boolean[getColumns()][getRows()];
-
-            if(!checkConnection(sourcePos, isChecked)) toReturn = false;
-
-            for (int i = 0; i < getColumns(); i++) {
-                for (int j = 0; j < getRows(); j++) {
-                    Position pos = new Position(i,j);
-                    if ((!isChecked[i][j])&&(getField(pos).getPipeType() != PipeType.WALL)){
-                        toReturn = false;
-                    }
-                }
-            }
+            toReturn = (connectivity.getComponentSize(indexOf(sourcePos)) == nonWallPieces);
         }
         return toReturn;
     }
 
     /**
-     * Checks if all pipes in the network are connected.
+     * to check if a pipe is reachable from the source
      *
-     * @param pos The position of the pipe to check.
-     * @param isChecked A boolean array that keeps track of the pipes that have been checked.
-     * @return True if all pipes are connected, false otherwise.
+     * @param pos the position of the pipe
+     * @return true, if the pipe is the source or is connected to the source; false, if not or there is no source
      */
-    private boolean checkConnection(Position pos,boolean[][] isChecked){
-        boolean toReturn = true;
-
-        if (!isChecked[pos.getX()][pos.getY()]){
-
-            isChecked[pos.getX()][pos.getY()] = true;
+    public boolean isReachableFromSource(Position pos){
+        boolean toReturn = false;
 
-            if(isConnectedToTop(pos)){
-                if(!checkConnection(getUpperPos(pos),isChecked)) toReturn = false;
-            }
-            if(isConnectedToBottom(pos)){
-                if(!checkConnection(getDownPos(pos),isChecked)) toReturn = false;
-            }
-            if(isConnectedToRight(pos)){
-                if (!checkConnection(getRightPos(pos),isChecked)) toReturn = false;
-            }
-            if(isConnectedToLeft(pos)){
-                if(!checkConnection(getLeftPos(pos),isChecked)) toReturn = false;
-            }
+        if(sourcePos != null) {
+            toReturn = sourcePos.equals(pos) || connectivity.isConnected(indexOf(sourcePos), indexOf(pos));
         }
         return toReturn;
     }
@@ -486,185 +549,180 @@ public class PlayField {
      * @return true, if there is No open end; false, it there is an open end
      */
     public boolean checkOpenEnd(){
-        boolean toReturn = true;
-        for(int i = 0;((i < getColumns())&&(toReturn));i++){
-            for(int j = 0;((j < getRows())&&(toReturn));j++){
-                Position pos = new Position(i,j);
-                if(getField(pos).isOpenToTop())
-                    if(!isConnectedToTop(pos)) toReturn = false;
-
-                if(getField(pos).isOpenToBottom())
-                    if(!isConnectedToBottom(pos)) toReturn = false;
-
-                if(getField(pos).isOpenToRight())
-                    if(!isConnectedToRight(pos)) toReturn = false;
-
-                if(getField(pos).isOpenToLeft())
-                    if(!isConnectedToLeft(pos)) toReturn = false;
-            }
-        }
-        return toReturn;
+        return openEnds == 0;
     }
 
     /**
-     * Checks if a pipe at the given position is connected to the top.
-     *
-     * @param pos the position to check if connected to the top
-     * @return true if connected to the top, false otherwise
+     * to count all open ends on the field again.
+     * Every connection closes two openings, so the open ends are all openings minus twice the connections,
+     * and the connections are counted once each by looking only to the right and to the bottom.
      */
-    private boolean isConnectedToTop(Position pos){
-        boolean toReturn = false;
-        if(getField(pos).isOpenToTop()){
-            if (getUpperPos(pos)!= null)
-                toReturn = getField(getUpperPos(pos)).isOpenToBottom();
+    private void countOpenEnds(){
+        int openings = 0;
+        int connections = 0;
+        for (int i = 0; i < board.size(); i++) {
+            int pipeNumber = board.getPipeNumber(i);
+            if (pipeNumber != 0) {
+                openings += Integer.bitCount(pipeNumber);
+                if (board.connectedNeighbour(i, Direction.RIGHT, overflow) >= 0) connections++;
+                if (board.connectedNeighbour(i, Direction.BOTTOM, overflow) >= 0) connections++;
+            }
         }
-        return toReturn;
+        openEnds = openings - 2 * connections;
     }
 
     /**
-     * Checks if a pipe at the given position is connected to the bottom.
+     * to count the open ends of a cell
      *
-     * @param pos the position to check if connected to the bottom
-     * @return true if connected to the bottom, false otherwise
+     * @param index the index of the cell
+     * @return the number of openings of the cell which are not connected to another pipe
      */
-    private boolean isConnectedToBottom(Position pos){
-        boolean toReturn = false;
-        if(getField(pos).isOpenToBottom()){
-            if (getDownPos(pos)!= null)
-                toReturn = getField(getDownPos(pos)).isOpenToTop();
+    private int countOpenEnds(int index){
+        int counter = 0;
+        int pipeNumber = board.getPipeNumber(index);
+        if (pipeNumber != 0) {
+            for (Direction dir : Direction.values()) {
+                if (((pipeNumber & dir.getBit()) != 0) && (board.connectedNeighbour(index, dir, overflow) < 0))
+                    counter++;
+            }
         }
-        return toReturn;
+        return counter;
     }
 
     /**
-     * Checks if a pipe at the given position is connected to the right.
+     * to count the open ends of a cell and its neighbours,
+     * which are the only cells whose open ends change when the cell changes
      *
-     * @param pos the position to check if connected to the right
-     * @return true if connected to the right, false otherwise
-     */
-    private boolean isConnectedToRight(Position pos){
-        boolean toReturn = false;
-        if(getField(pos).isOpenToRight()){
-            if (getRightPos(pos)!= null)
-                toReturn = getField(getRightPos(pos)).isOpenToLeft();
+     * @param index the index of the cell
+     * @return the number of open ends of the cell and its neighbours
+     */
+    private int countOpenEndsAround(int index){
+        int[] cells = {index, -1, -1, -1, -1};
+        int counter = countOpenEnds(index);
+        for (Direction dir : Direction.values()) {
+            int neighbour = board.neighbour(index, dir, overflow);
+            boolean isCounted = (neighbour < 0);
+            for (int i = 0; (i <= dir.ordinal()) && (!isCounted); i++) {
+                isCounted = (cells[i] == neighbour);
+            }
+            cells[dir.ordinal() + 1] = neighbour;
+            if (!isCounted) counter += countOpenEnds(neighbour);
         }
-        return toReturn;
+        return counter;
     }
 
     /**
-     * Checks if a pipe at the given position is connected to the left.
+     * to get the position of a cell
      *
-     * @param pos the position to check if connected to the left
-     * @return true if connected to the left, false otherwise
+     * @param index the index of the cell
+     * @return the position of the cell
      */
-    private boolean isConnectedToLeft(Position pos){
-        boolean toReturn = false;
-        if(getField(pos).isOpenToLeft()){
-            if (getLeftPos(pos)!= null)
-                toReturn =getField(getLeftPos(pos)).isOpenToRight();
-        }
-        return toReturn;
+    public Position toPosition(int index){
+        return new Position(index % getColumns(), index / getColumns());
     }
 
     /**
-     * This method is checking if the given position is located on the most top row of the game board.
+     * to get the pipe number of a cell
      *
-     * @param pos the position to check
-     * @return whether the given position is at the most top row or not.
+     * @param index the index of the cell
+     * @return the pipe number
      */
-    private boolean isAtMostTopRow(Position pos){
-        return (pos.getY() == 0);
+    int getPipeNumber(int index){
+        return board.getPipeNumber(index);
     }
 
     /**
-     * This method is checking if the given position is located on the most bottom row of the game board.
+     * to set the pipe number of a cell.
+     * All changes of a cell go through here, so that the frontier and the counters stay up-to-date.
      *
-     * @param pos the position to check
-     * @return whether the given position is at the most bottom row or not.
-     */
-    private boolean isAtMostBottomRow(Position pos){
-        return (pos.getY() == getRows()-1);
+     * @param index the index of the cell
+     * @param pipeNumber the new pipe number
+     */
+    void setPipeNumber(int index, int pipeNumber){
+        int oldPipeNumber = board.getPipeNumber(index);
+        if (oldPipeNumber != pipeNumber) {
+            openEnds -= countOpenEndsAround(index);
+            connectivity.setPipeNumber(index, pipeNumber);
+            openEnds += countOpenEndsAround(index);
+
+            if (oldPipeNumber == 0) nonWallPieces++;
+            if (pipeNumber == 0) nonWallPieces--;
+
+            addFilledToFrontier(index);
+            for (Direction dir : Direction.values()) {
+                int neighbour = board.neighbour(index, dir, overflow);
+                if (neighbour >= 0) addFilledToFrontier(neighbour);
+            }
+        }
     }
 
     /**
-     * This method is checking if the given position is located on the most right column of the game board.
+     * to get the filled state of a cell
      *
-     * @param pos the position to check
-     * @return whether the given position is at the most right column or not.
+     * @param index the index of the cell
+     * @return true, is filled; false, is not filled
      */
-    private boolean isAtMostRightColumn(Position pos){
-        return (pos.getX() == getColumns()-1);
+    boolean isFilled(int index){
+        return board.isFilled(index);
     }
 
     /**
-     * This method is checking if the given position is located on the most left column of the game board.
+     * to set the filled state of a cell.
+     * All changes of a cell go through here, so that the frontier stays up-to-date.
      *
-     * @param pos the position to check
-     * @return whether the given position is at the most left column or not.
-     */
-    private boolean isAtMostLeftColumn(Position pos){
-        return (pos.getX() == 0);
+     * @param index the index of the cell
+     * @param isFilled the new filled state
+     */
+    void setFilled(int index, boolean isFilled){
+        if (board.isFilled(index) != isFilled) {
+            board.setFilled(index, isFilled);
+            if (isFilled) {
+                frontier.add(index);
+            } else {
+                for (Direction dir : Direction.values()) {
+                    int neighbour = board.neighbour(index, dir, overflow);
+                    if (neighbour >= 0) addFilledToFrontier(neighbour);
+                }
+            }
+        }
     }
 
     /**
-     * Returns the position above the given position.
+     * to add a cell to the frontier if it is filled
      *
-     * @param pos the current position
-     * @return the position above the given position
+     * @param index the index of the cell
      */
-    private Position getUpperPos(Position pos){
-        Position newPos = null;
-        if(!isAtMostTopRow(pos))
-            newPos = new Position(pos.getX(), pos.getY()-1);
-        else if(overflow)
-            newPos = new Position(pos.getX(), getRows()-1);
-
-        return newPos;
+    private void addFilledToFrontier(int index){
+        if (board.isFilled(index)) frontier.add(index);
     }
 
     /**
-     * Returns the position below the given position.
+     * to get the index of a position on the board
      *
-     * @param pos the current position
-     * @return the position below the given position
+     * @param pos the position
+     * @return the index of the position on the board
      */
-    private Position getDownPos(Position pos){
-        Position newPos = null;
-        if(!isAtMostBottomRow(pos))
-            newPos = new Position(pos.getX(), pos.getY()+1);
-        else if(overflow)
-            newPos = new Position(pos.getX(), 0);
-
-        return newPos;
+    int indexOf(Position pos){
+        return board.index(pos.getX(), pos.getY());
     }
 
     /**
-     * Returns the position to the right of the given position.
-     * @param pos the current position
-     * @return the position to the right of the given position
+     * to get the pipe number of the pipe at the given position
+     *
+     * @param pos the position
+     * @return the pipe number
      */
-    private Position getRightPos(Position pos){
-        Position newPos = null;
-        if(!isAtMostRightColumn(pos))
-            newPos = new Position(pos.getX()+1, pos.getY());
-        else if(overflow)
-            newPos = new Position(0, pos.getY());
-
-        return newPos;
+    private int getPipeNumber(Position pos){
+        return board.getPipeNumber(indexOf(pos));
     }
 
     /**
-     * Returns the position to the left of the given position.
-     * @param pos the current position
-     * @return the position to the left of the given position
+     * to get the filled state of the pipe at the given position
+     *
+     * @param pos the position
+     * @return true, is filled; false, is not filled
      */
-    private Position getLeftPos(Position pos){
-        Position newPos = null;
-        if(!isAtMostLeftColumn(pos))
-            newPos = new Position(pos.getX()-1, pos.getY());
-        else if(overflow)
-            newPos = new Position(getColumns()-1, pos.getY());
-
-        return newPos;
+    private boolean isFilled(Position pos){
+        return board.isFilled(indexOf(pos));
     }
 }
@@ -0,0 +1,216 @@
+package logic;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * the compact binary save format of a play field.
+ * A file starts with a header of 32 bytes:
+ * magic "FPIP"(4), version(2), flags(1: overflow, has seed, has source), percentage of wall pieces(1),
+ * columns(4), rows(4), source x(4), source y(4), seed(8).
+ * After the header the pipe numbers follow, two cells per byte in the order of the cell indexes
+ * (row by row, the lower nibble is the cell with the even index), which is the layout of the board in memory.
+ * A file is read into a buffer on the heap, from which the pipe numbers are copied straight into the board;
+ * the file is not mapped, so it is not locked after loading and can be saved over at once.
+ *
+ * @author LiChieh Chou
+ */
+final class PlayFieldBinaryFormat {
+    /**
+     * the file extension of the binary format
+     */
+    static final String FILE_EXTENSION = ".fpb";
+
+    /**
+     * the magic number at the start of each file, "FPIP"
+     */
+    private static final int MAGIC = 0x46504950;
+
+    /**
+     * the version of the format
+     */
+    private static final short VERSION = 1;
+
+    /**
+     * the size of the header in bytes
+     */
+    private static final int HEADER_SIZE = 32;
+
+    /**
+     * the flag for the overflow mode
+     */
+    private static final int FLAG_OVERFLOW = 1;
+
+    /**
+     * the flag for a play field with a seed
+     */
+    private static final int FLAG_SEED = 2;
+
+    /**
+     * the flag for a play field with a source
+     */
+    private static final int FLAG_SOURCE = 4;
+
+    private PlayFieldBinaryFormat() {
+    }
+
+    /**
+     * to check if a file is in the binary format, by its magic number
+     *
+     * @param path the file
+     * @return true, if the file starts with the magic number; false, otherwise
+     * @throws IOException if the file can not be read
+     */
+    static boolean isBinary(Path path) throws IOException {
+        boolean toReturn = false;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && (channel.read(magic) >= 0)) {
+                // read until the magic number is complete or the file ends
+            }
+            if (!magic.hasRemaining()) toReturn = (magic.getInt(0) == MAGIC);
+        }
+        return toReturn;
+    }
+
+    /**
+     * to write a play field into a file
+     *
+     * @param playField the play field
+     * @param path the file
+     * @throws IOException if the file can not be written
+     */
+    static void write(PlayField playField, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            write(playField, channel);
+        }
+    }
+
+    /**
+     * to write a play field at the current position of a channel
+     *
+     * @param playField the play field
+     * @param channel the channel
+     * @return the number of written bytes
+     * @throws IOException if the play field can not be written
+     */
+    static long write(PlayField playField, FileChannel channel) throws IOException {
+        int flags = 0;
+        if (playField.getOverflow()) flags |= FLAG_OVERFLOW;
+        if (playField.getSeed() != null) flags |= FLAG_SEED;
+        if (playField.getSourcePos() != null) flags |= FLAG_SOURCE;
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.put((byte) flags);
+        header.put((byte) playField.getPercentageOfWall());
+        header.putInt(playField.getColumns());
+        header.putInt(playField.getRows());
+        header.putInt((playField.getSourcePos() != null) ? playField.getSourcePos().getX() : 0);
+        header.putInt((playField.getSourcePos() != null) ? playField.getSourcePos().getY() : 0);
+        header.putLong((playField.getSeed() != null) ? playField.getSeed() : 0);
+        header.flip();
+
+        ByteBuffer[] buffers = {header, playField.getPackedPipeNumbers()};
+        long toReturn = 0;
+        while (buffers[1].hasRemaining()) {
+            toReturn += channel.write(buffers);
+        }
+        return toReturn;
+    }
+
+    /**
+     * to read a play field from a file
+     *
+     * @param path the file
+     * @return the play field
+     * @throws IOException if the file can not be read or is not a valid file of this format
+     */
+    static PlayField read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel, 0, channel.size());
+        }
+    }
+
+    /**
+     * to read a play field from a part of a channel
+     *
+     * @param channel the channel
+     * @param position the position of the play field in the channel
+     * @param size the size of the play field in bytes
+     * @return the play field
+     * @throws IOException if the part can not be read or is not a valid play field of this format
+     */
+    static PlayField read(FileChannel channel, long position, long size) throws IOException {
+        return read(channel, position, size, true);
+    }
+
+    /**
+     * to read a play field from a part of a channel, which may end with unused bytes after the play field,
+     * e.g. a level of a puzzle pack followed by an old index
+     *
+     * @param channel the channel
+     * @param position the position of the play field in the channel
+     * @param size the size of the part in bytes
+     * @param isExact true, if the play field has to fill the whole part; false, if the part may be larger
+     * @return the play field
+     * @throws IOException if the part can not be read or is not a valid play field of this format
+     */
+    static PlayField read(FileChannel channel, long position, long size, boolean isExact) throws IOException {
+        if ((size < HEADER_SIZE) || (position < 0) || (position + size > channel.size()))
+            throw new IOException("File format error");
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, buffer, position);
+        buffer.flip();
+        if ((buffer.getInt() != MAGIC) || (buffer.getShort() != VERSION))
+            throw new IOException("File format error");
+
+        int flags = buffer.get();
+        int percentageOfWall = buffer.get();
+        int columns = buffer.getInt();
+        int rows = buffer.getInt();
+        int sourceX = buffer.getInt();
+        int sourceY = buffer.getInt();
+        long seed = buffer.getLong();
+
+        if ((columns <= 0) || (rows <= 0) || ((long) columns * rows > Integer.MAX_VALUE - 1))
+            throw new IOException("File format error");
+        long playFieldSize = HEADER_SIZE + (((long) columns * rows + 1) >> 1);
+        if ((isExact && (size != playFieldSize)) || (size < playFieldSize))
+            throw new IOException("File format error");
+        if (((flags & FLAG_SOURCE) != 0) && ((sourceX < 0) || (sourceX >= columns) || (sourceY < 0) || (sourceY >= rows)))
+            throw new IOException("File format error");
+
+        ByteBuffer pipeNumbers = ByteBuffer.allocate((int) (playFieldSize - HEADER_SIZE));
+        readFully(channel, pipeNumbers, position + HEADER_SIZE);
+        pipeNumbers.flip();
+
+        PlayField toReturn = new PlayField(columns, rows, (flags & FLAG_OVERFLOW) != 0);
+        toReturn.setPackedPipeNumbers(pipeNumbers);
+        if ((flags & FLAG_SOURCE) != 0) toReturn.setSourcePos(new Position(sourceX, sourceY));
+        if ((flags & FLAG_SEED) != 0) toReturn.setSeed(seed, percentageOfWall);
+        return toReturn;
+    }
+
+    /**
+     * to fill a buffer from a position of a channel
+     *
+     * @param channel the channel
+     * @param buffer the buffer
+     * @param position the position in the channel
+     * @throws IOException if the channel ends before the buffer is full
+     */
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) throw new IOException("File format error");
+            position += read;
+        }
+    }
+}
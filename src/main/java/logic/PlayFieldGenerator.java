@@ -0,0 +1,234 @@
+package logic;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+/**
+ * the generator for solvable play fields.
+ * The pipes form a random spanning tree over the non-wall cells, grown from the source cell,
+ * so that every pipe is reachable from the source and no pipe has an open end.
+ * The pipe of a cell follows from its edges in the tree. A cell gets at most three edges,
+ * because there is no pipe with four openings.
+ *
+ * @author LiChieh Chou
+ */
+final class PlayFieldGenerator {
+    /**
+     * all directions, indexed by their ordinal
+     */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * the most openings a pipe can have
+     */
+    private static final int MAX_OPENINGS = 3;
+
+    /**
+     * the most times a tree is grown again after it got stuck, before the generation fails.
+     * A tree did not get stuck once in millions of trees of every number of pipes, also on 2xN boards and in overflow mode,
+     * so the limit is only a guard against an endless loop.
+     */
+    private static final int MAX_ATTEMPTS = 100;
+
+    /**
+     * the board, which gives the neighbours of the cells
+     */
+    private final PackedBoard board;
+
+    /**
+     * the overflow mode
+     */
+    private final boolean overflow;
+
+    /**
+     * the pipe number of each cell, built up from the edges of the tree
+     */
+    private final byte[] pipeNumbers;
+
+    /**
+     * the cells which are already in the tree
+     */
+    private final BitSet inTree;
+
+    /**
+     * the possible edges from the tree to a new cell, stored as (cell index * 4 + direction ordinal)
+     */
+    private final int[] edges;
+
+    /**
+     * the number of possible edges
+     */
+    private int edgeCount;
+
+    /**
+     * the cells which could not be added because the pipe next to them already has three openings
+     */
+    private final int[] blocked;
+
+    /**
+     * the number of blocked cells
+     */
+    private int blockedCount;
+
+    /**
+     * Constructor for the generator
+     *
+     * @param board the board, which gives the size and the neighbours of the cells
+     * @param overflow overflow mode
+     */
+    PlayFieldGenerator(PackedBoard board, boolean overflow) {
+        this.board = board;
+        this.overflow = overflow;
+        this.pipeNumbers = new byte[board.size()];
+        this.inTree = new BitSet(board.size());
+        this.edges = new int[4 * board.size()];
+        this.blocked = new int[4 * board.size()];
+    }
+
+    /**
+     * to generate the pipe numbers of a solvable play field.
+     * The number of pipes is reached exactly, all other cells are wall pieces.
+     *
+     * @param source the index of the source cell
+     * @param pieces the number of cells which are not wall pieces, at least 2
+     * @param rand the random generator
+     * @return the pipe number of each cell
+     * @throws IllegalStateException if the tree got stuck each time it was grown, see {@link #MAX_ATTEMPTS}
+     */
+    byte[] generate(int source, int pieces, SplittableRandom rand) {
+        int attempts = 1;
+        // the tree got stuck, which is very rare, so it is simply grown again
+        while (!growTree(source, pieces, rand)) {
+            if (attempts++ == MAX_ATTEMPTS)
+                throw new IllegalStateException("No play field with " + pieces + " pipes could be generated in "
+                        + MAX_ATTEMPTS + " attempts");
+        }
+        return pipeNumbers;
+    }
+
+    /**
+     * to grow a random tree from the source, by adding a randomly chosen possible edge
+     * until the tree has the wanted number of cells
+     *
+     * @param source the index of the source cell
+     * @param pieces the number of cells of the tree
+     * @param rand the random generator
+     * @return true, if the tree has the wanted number of cells; false, if no more cell can be added
+     */
+    private boolean growTree(int source, int pieces, SplittableRandom rand) {
+        Arrays.fill(pipeNumbers, (byte) 0);
+        inTree.clear();
+        edgeCount = 0;
+        blockedCount = 0;
+
+        addToTree(source);
+        int treeSize = 1;
+        boolean toReturn = true;
+
+        while ((treeSize < pieces) && toReturn) {
+            int cell = -1;
+            if (edgeCount > 0) {
+                int i = rand.nextInt(edgeCount);
+                int edge = edges[i];
+                edges[i] = edges[--edgeCount];
+
+                int from = edge >> 2;
+                Direction dir = DIRECTIONS[edge & 3];
+                int to = board.neighbour(from, dir, overflow);
+                if (!inTree.get(to)) {
+                    if (countOpenings(from) < MAX_OPENINGS) {
+                        connect(from, dir);
+                        cell = to;
+                    } else {
+                        blocked[blockedCount++] = to;
+                    }
+                }
+            } else if (blockedCount > 0) {
+                int to = blocked[--blockedCount];
+                if (!inTree.get(to) && connectByMovingALeaf(to)) cell = to;
+            } else {
+                toReturn = false;
+            }
+
+            if (cell >= 0) {
+                addToTree(cell);
+                treeSize++;
+            }
+        }
+        return toReturn;
+    }
+
+    /**
+     * to add a cell to the tree and remember the edges to its neighbours outside of the tree
+     *
+     * @param cell the index of the cell
+     */
+    private void addToTree(int cell) {
+        inTree.set(cell);
+        for (Direction dir : DIRECTIONS) {
+            int neighbour = board.neighbour(cell, dir, overflow);
+            if ((neighbour >= 0) && (neighbour != cell) && !inTree.get(neighbour))
+                edges[edgeCount++] = (cell << 2) | dir.ordinal();
+        }
+    }
+
+    /**
+     * to connect a blocked cell to a neighbour in the tree, whose pipe already has three openings.
+     * One of its end pipes is moved to another pipe of the tree, which frees an opening for the blocked cell.
+     *
+     * @param cell the index of the blocked cell
+     * @return true, if the cell is connected; false, if no end pipe could be moved
+     */
+    private boolean connectByMovingALeaf(int cell) {
+        boolean toReturn = false;
+
+        for (int i = 0; (i < DIRECTIONS.length) && !toReturn; i++) {
+            Direction toTree = DIRECTIONS[i];
+            int full = board.neighbour(cell, toTree, overflow);
+            if ((full < 0) || !inTree.get(full)) continue;
+
+            for (int j = 0; (j < DIRECTIONS.length) && !toReturn; j++) {
+                Direction toLeaf = DIRECTIONS[j];
+                int leaf = board.neighbour(full, toLeaf, overflow);
+                if (((pipeNumbers[full] & toLeaf.getBit()) == 0) || (countOpenings(leaf) != 1)) continue;
+
+                for (int k = 0; (k < DIRECTIONS.length) && !toReturn; k++) {
+                    Direction toOther = DIRECTIONS[k];
+                    int other = board.neighbour(leaf, toOther, overflow);
+                    if ((other >= 0) && (other != full) && (other != leaf) && inTree.get(other)
+                            && (countOpenings(other) < MAX_OPENINGS)) {
+                        pipeNumbers[full] &= (byte) ~toLeaf.getBit();
+                        pipeNumbers[leaf] = 0;
+                        connect(leaf, toOther);
+                        connect(full, toTree.opposite());
+                        toReturn = true;
+                    }
+                }
+            }
+        }
+        return toReturn;
+    }
+
+    /**
+     * to connect a cell with its neighbour in the given direction
+     *
+     * @param from the index of the cell
+     * @param dir the direction of the neighbour
+     */
+    private void connect(int from, Direction dir) {
+        int to = board.neighbour(from, dir, overflow);
+        pipeNumbers[from] |= (byte) dir.getBit();
+        pipeNumbers[to] |= (byte) dir.opposite().getBit();
+    }
+
+    /**
+     * to count the openings of the pipe of a cell
+     *
+     * @param cell the index of the cell
+     * @return the number of openings
+     */
+    private int countOpenings(int cell) {
+        return Integer.bitCount(pipeNumbers[cell]);
+    }
+}
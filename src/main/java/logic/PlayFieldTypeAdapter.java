@@ -0,0 +1,150 @@
+package logic;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The PlayFieldTypeAdapter class writes PlayField objects as JSON and reads them back.
+ * The JSON is streamed through a JsonWriter/JsonReader, so that no JSON tree and no object per cell is created.
+ * The format is:
+ * {"source":{"x":0,"y":0},"overflow":false,"board":[[pipe numbers of column 0], ...],"seed":0,"percentageOfWall":0}
+ * in which "seed" and "percentageOfWall" are only written for generated play fields.
+ *
+ * @author LiChieh Chou
+ */
+public class PlayFieldTypeAdapter extends TypeAdapter<PlayField> {
+    /**
+     * the pipe numbers as text, so that writing a cell does not create a new String
+     */
+    private static final String[] PIPE_NUMBERS = new String[16];
+
+    static {
+        for (int i = 0; i < PIPE_NUMBERS.length; i++) {
+            PIPE_NUMBERS[i] = Integer.toString(i);
+        }
+    }
+
+    @Override
+    public void write(JsonWriter out, PlayField playField) throws IOException {
+        out.beginObject();
+
+        out.name("source").beginObject();
+        out.name("x").value(playField.getSourcePos().getX());
+        out.name("y").value(playField.getSourcePos().getY());
+        out.endObject();
+
+        out.name("overflow").value(playField.getOverflow());
+
+        out.name("board").beginArray();
+        for (int i = 0;i < playField.getColumns();i++) {
+            out.beginArray();
+            for (int j = 0;j < playField.getRows();j++) {
+                out.jsonValue(PIPE_NUMBERS[playField.getPipeNumber(j * playField.getColumns() + i)]);
+            }
+            out.endArray();
+        }
+        out.endArray();
+
+        if (playField.getSeed() != null) {
+            out.name("seed").value(playField.getSeed());
+            out.name("percentageOfWall").value(playField.getPercentageOfWall());
+        }
+
+        out.endObject();
+    }
+
+    @Override
+    public PlayField read(JsonReader in) throws IOException {
+        Position sourcePos = null;
+        Boolean overflow = null;
+        Long seed = null;
+        int percentageOfWall = 0;
+        int columns = 0;
+        int rows = 0;
+        byte[] cells = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "source" -> sourcePos = readPosition(in);
+                case "overflow" -> overflow = in.nextBoolean();
+                case "seed" -> seed = in.nextLong();
+                case "percentageOfWall" -> percentageOfWall = in.nextInt();
+                case "board" -> {
+                    // the pipe numbers are collected column by column, as they are written
+                    cells = new byte[64];
+                    int count = 0;
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        in.beginArray();
+                        int columnStart = count;
+                        while (in.hasNext()) {
+                            if (count == cells.length) cells = Arrays.copyOf(cells, count * 2);
+                            cells[count++] = (byte) PipeShape.toPipeShape(in.nextInt()).getPipeNumber();
+                        }
+                        in.endArray();
+                        if (columns == 0) rows = count - columnStart;
+                        else if (count - columnStart != rows) throw new JsonParseException("The columns of the board have different lengths");
+                        columns++;
+                    }
+                    in.endArray();
+                }
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        if ((sourcePos == null) || (overflow == null) || (cells == null) || (rows == 0))
+            throw new JsonParseException("The play field is incomplete");
+        if ((sourcePos.getX() < 0) || (sourcePos.getX() >= columns) || (sourcePos.getY() < 0) || (sourcePos.getY() >= rows))
+            throw new JsonParseException("The source is not on the board");
+
+        // the board is stored row by row
+        byte[] pipeNumbers = new byte[columns * rows];
+        for (int i = 0;i < columns;i++){
+            for (int j = 0;j < rows;j++){
+                pipeNumbers[j * columns + i] = cells[i * rows + j];
+            }
+        }
+
+        PlayField newPlayField = new PlayField(columns, rows, overflow);
+        newPlayField.setPipeNumbers(pipeNumbers);
+        newPlayField.setSourcePos(sourcePos);
+        if (seed != null) newPlayField.setSeed(seed, percentageOfWall);
+        return newPlayField;
+    }
+
+    /**
+     * to read a position, which is written as {"x":0,"y":0}
+     *
+     * @param in the reader
+     * @return the position
+     * @throws IOException if the position can not be read
+     */
+    private Position readPosition(JsonReader in) throws IOException {
+        Position toReturn = null;
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+        } else {
+            int x = 0;
+            int y = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "x" -> x = in.nextInt();
+                    case "y" -> y = in.nextInt();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            toReturn = new Position(x, y);
+        }
+        return toReturn;
+    }
+}
@@ -0,0 +1,258 @@
+package logic;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * the generator for many puzzles of the same size at once.
+ * The puzzles are generated in parallel on a ForkJoinPool and handed to a consumer as soon as each is finished.
+ * Every puzzle has its own seed, so each one can be created again with {@link PlayField#createPuzzle}.
+ *
+ * @author LiChieh Chou
+ */
+public class PuzzleBatchGenerator {
+    /**
+     * the number of tasks per worker thread the batch is split into,
+     * so that the threads which finish early can take over the rest
+     */
+    private static final int TASKS_PER_THREAD = 8;
+
+    /**
+     * the pool on which the puzzles are generated
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor for the batch generator, which uses the common pool
+     */
+    public PuzzleBatchGenerator(){
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for the batch generator
+     *
+     * @param pool the pool on which the puzzles are generated
+     */
+    public PuzzleBatchGenerator(ForkJoinPool pool){
+        this.pool = pool;
+    }
+
+    /**
+     * to generate a batch of generated and mixed puzzles.
+     * The consumer is called from the worker threads, in no particular order, so it has to be thread-safe.
+     * The seeds of the puzzles are taken from the given seed, so the same batch is generated for the same seed.
+     *
+     * @param columns the size(columns) of the puzzles
+     * @param rows the size(rows) of the puzzles
+     * @param percentageOfWall the max allowed percentage of wall pieces
+     * @param overflow overflow mode
+     * @param count the number of puzzles
+     * @param seed the seed from which the seeds of the puzzles are taken
+     * @param consumer the consumer which gets each finished puzzle
+     * @return the report with the throughput of the batch
+     */
+    public Report generate(int columns, int rows, int percentageOfWall, boolean overflow,
+                           int count, long seed, Consumer<PlayField> consumer){
+        long[] seeds = new long[count];
+        SplittableRandom rand = new SplittableRandom(seed);
+        for (int i = 0; i < count; i++) {
+            seeds[i] = rand.nextLong();
+        }
+
+        int tasks = pool.getParallelism() * TASKS_PER_THREAD;
+        int puzzlesPerTask = Math.max(1, (count + tasks - 1) / tasks);
+
+        long start = System.nanoTime();
+        pool.invoke(new GenerateTask(columns, rows, percentageOfWall, overflow, seeds, 0, count, puzzlesPerTask, consumer));
+        return new Report(columns, rows, count, System.nanoTime() - start);
+    }
+
+    /**
+     * the task which generates the puzzles of a part of the batch.
+     * Large parts are split in halves, small parts are generated one after another with the same scratch buffers.
+     */
+    private static class GenerateTask extends RecursiveAction {
+        /**
+         * the version of the serialized form, which a RecursiveAction has
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * the size(columns) of the puzzles
+         */
+        private final int columns;
+
+        /**
+         * the size(rows) of the puzzles
+         */
+        private final int rows;
+
+        /**
+         * the max allowed percentage of wall pieces
+         */
+        private final int percentageOfWall;
+
+        /**
+         * the overflow mode
+         */
+        private final boolean overflow;
+
+        /**
+         * the seeds of all puzzles of the batch
+         */
+        private final long[] seeds;
+
+        /**
+         * the first puzzle of this part (inclusive)
+         */
+        private final int from;
+
+        /**
+         * the last puzzle of this part (exclusive)
+         */
+        private final int to;
+
+        /**
+         * the number of puzzles up to which a part is not split any more
+         */
+        private final int puzzlesPerTask;
+
+        /**
+         * the consumer which gets each finished puzzle
+         */
+        private final Consumer<PlayField> consumer;
+
+        /**
+         * Constructor for the task
+         *
+         * @param columns the size(columns) of the puzzles
+         * @param rows the size(rows) of the puzzles
+         * @param percentageOfWall the max allowed percentage of wall pieces
+         * @param overflow overflow mode
+         * @param seeds the seeds of all puzzles of the batch
+         * @param from the first puzzle of this part (inclusive)
+         * @param to the last puzzle of this part (exclusive)
+         * @param puzzlesPerTask the number of puzzles up to which a part is not split any more
+         * @param consumer the consumer which gets each finished puzzle
+         */
+        GenerateTask(int columns, int rows, int percentageOfWall, boolean overflow, long[] seeds,
+                     int from, int to, int puzzlesPerTask, Consumer<PlayField> consumer){
+            this.columns = columns;
+            this.rows = rows;
+            this.percentageOfWall = percentageOfWall;
+            this.overflow = overflow;
+            this.seeds = seeds;
+            this.from = from;
+            this.to = to;
+            this.puzzlesPerTask = puzzlesPerTask;
+            this.consumer = consumer;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > puzzlesPerTask) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new GenerateTask(columns, rows, percentageOfWall, overflow, seeds, from, middle, puzzlesPerTask, consumer),
+                        new GenerateTask(columns, rows, percentageOfWall, overflow, seeds, middle, to, puzzlesPerTask, consumer));
+            } else {
+                PlayFieldGenerator generator = new PlayFieldGenerator(new PackedBoard(columns, rows), overflow);
+                for (int i = from; i < to; i++) {
+                    consumer.accept(PlayField.createPuzzle(columns, rows, overflow, percentageOfWall, seeds[i], generator));
+                }
+            }
+        }
+    }
+
+    /**
+     * the report of a generated batch
+     */
+    public static class Report {
+        /**
+         * the size(columns) of the puzzles
+         */
+        private final int columns;
+
+        /**
+         * the size(rows) of the puzzles
+         */
+        private final int rows;
+
+        /**
+         * the number of generated puzzles
+         */
+        private final int count;
+
+        /**
+         * the time the batch took in nanoseconds
+         */
+        private final long nanos;
+
+        /**
+         * Constructor for the report
+         *
+         * @param columns the size(columns) of the puzzles
+         * @param rows the size(rows) of the puzzles
+         * @param count the number of puzzles
+         * @param nanos the time the batch took in nanoseconds
+         */
+        Report(int columns, int rows, int count, long nanos){
+            this.columns = columns;
+            this.rows = rows;
+            this.count = count;
+            this.nanos = nanos;
+        }
+
+        /**
+         * to get the size(columns) of the puzzles
+         *
+         * @return the columns
+         */
+        public int getColumns() {
+            return columns;
+        }
+
+        /**
+         * to get the size(rows) of the puzzles
+         *
+         * @return the rows
+         */
+        public int getRows() {
+            return rows;
+        }
+
+        /**
+         * to get the number of generated puzzles
+         *
+         * @return the number of puzzles
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * to get the time the batch took
+         *
+         * @return the time in nanoseconds
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * to get the throughput of the batch
+         *
+         * @return the generated puzzles per second
+         */
+        public double getPuzzlesPerSecond() {
+            return (nanos > 0) ? (count * 1_000_000_000.0 / nanos) : 0;
+        }
+
+        @Override
+        public String toString() {
+            return columns + "x" + rows + ": " + count + " puzzles, " + String.format("%.0f", getPuzzlesPerSecond()) + " puzzles/s";
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package logic;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * the puzzle pack, a file with many levels and an index of their offsets.
+ * A pack starts with a header of 24 bytes:
+ * magic "FPPK"(4), version(2), reserved(2), number of levels(4), reserved(4), offset of the index(8).
+ * The levels follow one after another, each in the binary format of {@link PlayFieldBinaryFormat}.
+ * The index at the end holds the offset(8) of each level, so a level is found in constant time
+ * and only its own part of the file is read, with reads at its position into a buffer on the heap.
+ * The level is not mapped into memory: a mapping can not be released when the level is read,
+ * and on Windows it would lock the pack until it is collected, so that no levels could be appended to it.
+ * When levels are appended, the old index stays in the file as unused bytes before the new levels,
+ * so a level may be followed by unused bytes and the index may be followed by an unfinished append.
+ * Packs are written with a {@link PuzzlePackWriter}.
+ *
+ * @author LiChieh Chou
+ */
+public final class PuzzlePack {
+    /**
+     * the file extension of puzzle packs
+     */
+    public static final String FILE_EXTENSION = ".fpk";
+
+    /**
+     * the magic number at the start of each pack, "FPPK"
+     */
+    static final int MAGIC = 0x4650504B;
+
+    /**
+     * the version of the format
+     */
+    static final short VERSION = 1;
+
+    /**
+     * the size of the header in bytes
+     */
+    static final int HEADER_SIZE = 24;
+
+    private PuzzlePack() {
+    }
+
+    /**
+     * to check if a file is a puzzle pack, by its magic number
+     *
+     * @param path the file
+     * @return true, if the file is a puzzle pack; false, otherwise
+     * @throws IOException if the file can not be read
+     */
+    public static boolean isPack(Path path) throws IOException {
+        boolean toReturn = false;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() >= HEADER_SIZE) toReturn = (readHeader(channel).getInt(0) == MAGIC);
+        }
+        return toReturn;
+    }
+
+    /**
+     * to get the number of levels in a pack
+     *
+     * @param path the pack
+     * @return the number of levels
+     * @throws IOException if the file can not be read or is not a valid pack
+     */
+    public static int getLevelCount(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return checkHeader(channel).getInt(8);
+        }
+    }
+
+    /**
+     * to read one level of a pack, without reading the other levels.
+     * Only the header, two offsets of the index and the bytes of the level are read, whatever the size of the pack.
+     *
+     * @param path the pack
+     * @param level the number of the level, starting at 0
+     * @return the play field of the level
+     * @throws IOException if the file can not be read, is not a valid pack or has no such level
+     */
+    public static PlayField readLevel(Path path, int level) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = checkHeader(channel);
+            int levelCount = header.getInt(8);
+            long indexOffset = header.getLong(16);
+            if ((level < 0) || (level >= levelCount))
+                throw new IOException("There is no level " + (level + 1) + " in this pack of " + levelCount + " levels");
+
+            ByteBuffer offsets = ByteBuffer.allocate(2 * Long.BYTES);
+            if (level == levelCount - 1) offsets.limit(Long.BYTES);
+            PlayFieldBinaryFormat.readFully(channel, offsets, indexOffset + (long) level * Long.BYTES);
+            long start = offsets.getLong(0);
+            long end = (level == levelCount - 1) ? indexOffset : offsets.getLong(Long.BYTES);
+            if ((start < HEADER_SIZE) || (end < start) || (end > indexOffset))
+                throw new IOException("File format error");
+
+            return PlayFieldBinaryFormat.read(channel, start, end - start, false);
+        }
+    }
+
+    /**
+     * to read the header of a pack and check it
+     *
+     * @param channel the channel of the pack
+     * @return the header
+     * @throws IOException if the header can not be read or is not valid
+     */
+    static ByteBuffer checkHeader(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_SIZE) throw new IOException("File format error");
+        ByteBuffer toReturn = readHeader(channel);
+        int levelCount = toReturn.getInt(8);
+        long indexOffset = toReturn.getLong(16);
+        if ((toReturn.getInt(0) != MAGIC) || (toReturn.getShort(4) != VERSION) || (levelCount < 0)
+                || (indexOffset < HEADER_SIZE) || (indexOffset + (long) levelCount * Long.BYTES > channel.size()))
+            throw new IOException("File format error");
+        return toReturn;
+    }
+
+    /**
+     * to read the header of a pack
+     *
+     * @param channel the channel of the pack
+     * @return the header
+     * @throws IOException if the header can not be read
+     */
+    private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+        ByteBuffer toReturn = ByteBuffer.allocate(HEADER_SIZE);
+        PlayFieldBinaryFormat.readFully(channel, toReturn, 0);
+        return toReturn;
+    }
+}
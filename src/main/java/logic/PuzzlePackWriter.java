@@ -0,0 +1,138 @@
+package logic;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * the writer of a {@link PuzzlePack}, which appends one level after another to the file.
+ * Only the offsets of the levels are kept in memory, the index is written when the writer is closed.
+ * An existing pack can be opened to append more levels. They are written after its old index and the new index after them,
+ * the header is changed last; so until then the old header and index stay valid and no level is lost by an error or a crash.
+ *
+ * @author LiChieh Chou
+ */
+public class PuzzlePackWriter implements Closeable {
+    /**
+     * the channel of the pack
+     */
+    private final FileChannel channel;
+
+    /**
+     * the offset of each level
+     */
+    private long[] offsets;
+
+    /**
+     * the number of levels
+     */
+    private int levelCount;
+
+    /**
+     * Constructor for the writer
+     *
+     * @param path the pack
+     * @param append true, to append to an existing pack; false, to write a new pack
+     * @throws IOException if the file can not be opened or, when appending, is not a valid pack
+     */
+    public PuzzlePackWriter(Path path, boolean append) throws IOException {
+        this.offsets = new long[16];
+        this.levelCount = 0;
+
+        if (append && path.toFile().exists()) {
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                ByteBuffer header = PuzzlePack.checkHeader(channel);
+                levelCount = header.getInt(8);
+                long indexOffset = header.getLong(16);
+
+                ByteBuffer index = ByteBuffer.allocate(levelCount * Long.BYTES);
+                PlayFieldBinaryFormat.readFully(channel, index, indexOffset);
+                offsets = new long[Math.max(16, levelCount * 2)];
+                index.flip();
+                index.asLongBuffer().get(offsets, 0, levelCount);
+
+                // the old index is kept until the header points to the new one
+                channel.position(channel.size());
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        } else {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            // the header is written again when the writer is closed
+            writeHeader(0);
+        }
+    }
+
+    /**
+     * to append a level to the pack
+     *
+     * @param playField the play field of the level
+     * @throws IOException if the level can not be written
+     */
+    public void append(PlayField playField) throws IOException {
+        if (levelCount == offsets.length) offsets = Arrays.copyOf(offsets, levelCount * 2);
+        offsets[levelCount] = channel.position();
+        PlayFieldBinaryFormat.write(playField, channel);
+        levelCount++;
+    }
+
+    /**
+     * to get the number of levels in the pack
+     *
+     * @return the number of levels
+     */
+    public int getLevelCount() {
+        return levelCount;
+    }
+
+    /**
+     * to write the index and the header, and close the file
+     *
+     * @throws IOException if the index or the header can not be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            long indexOffset = channel.position();
+            ByteBuffer index = ByteBuffer.allocate(levelCount * Long.BYTES);
+            index.asLongBuffer().put(offsets, 0, levelCount);
+            while (index.hasRemaining()) {
+                channel.write(index);
+            }
+            channel.force(false);
+            writeHeader(indexOffset);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * to write the header at the start of the pack
+     *
+     * @param indexOffset the offset of the index
+     * @throws IOException if the header can not be written
+     */
+    private void writeHeader(long indexOffset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(PuzzlePack.HEADER_SIZE);
+        header.putInt(PuzzlePack.MAGIC);
+        header.putShort(PuzzlePack.VERSION);
+        header.putShort((short) 0);
+        header.putInt(levelCount);
+        header.putInt(0);
+        header.putLong(indexOffset);
+        header.flip();
+
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+        if (channel.position() < PuzzlePack.HEADER_SIZE) channel.position(PuzzlePack.HEADER_SIZE);
+    }
+}
@@ -0,0 +1,205 @@
+package logic;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * a pool of ready puzzles, which are generated in the background.
+ * The puzzles are kept by their settings (columns, rows, percentage of wall pieces, overflow mode),
+ * so that a new game can take a ready puzzle without waiting for the generation.
+ * Only the puzzles for the settings prepared last are filled up, the puzzles for other settings are dropped.
+ *
+ * @author LiChieh Chou
+ */
+public class PuzzlePool {
+    /**
+     * the ready puzzles for each settings
+     */
+    private final Map<Key, BlockingQueue<PlayField>> puzzles;
+
+    /**
+     * the number of puzzles which are kept ready for the settings
+     */
+    private final int capacity;
+
+    /**
+     * the settings for which the puzzles are generated
+     */
+    private volatile Key current;
+
+    /**
+     * the background thread which generates the puzzles
+     */
+    private final ExecutorService producer;
+
+    /**
+     * is the producer already asked to fill up the pool
+     */
+    private final AtomicBoolean isFilling;
+
+    /**
+     * Constructor for the pool
+     *
+     * @param capacity the number of puzzles which are kept ready
+     */
+    public PuzzlePool(int capacity){
+        this.puzzles = new ConcurrentHashMap<>();
+        this.capacity = capacity;
+        this.current = null;
+        this.producer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "puzzle-pool");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        this.isFilling = new AtomicBoolean(false);
+    }
+
+    /**
+     * to prepare puzzles for the given settings.
+     * The puzzles for all other settings are dropped and the pool is filled up in the background.
+     *
+     * @param columns the size(columns) of the puzzles
+     * @param rows the size(rows) of the puzzles
+     * @param percentageOfWall the max allowed percentage of wall pieces
+     * @param overflow overflow mode
+     */
+    public void prepare(int columns, int rows, int percentageOfWall, boolean overflow){
+        Key key = new Key(columns, rows, percentageOfWall, overflow);
+        current = key;
+        puzzles.keySet().removeIf(other -> !other.equals(key));
+        puzzles.computeIfAbsent(key, k -> new ArrayBlockingQueue<>(capacity));
+        fillUp();
+    }
+
+    /**
+     * to take a puzzle for the given settings.
+     * A ready puzzle is taken if there is one, otherwise the puzzle is generated right away.
+     * The taken puzzle is replaced in the background.
+     *
+     * @param columns the size(columns) of the puzzle
+     * @param rows the size(rows) of the puzzle
+     * @param percentageOfWall the max allowed percentage of wall pieces
+     * @param overflow overflow mode
+     * @return a generated and mixed puzzle
+     */
+    public PlayField take(int columns, int rows, int percentageOfWall, boolean overflow){
+        Key key = new Key(columns, rows, percentageOfWall, overflow);
+        if (!key.equals(current)) prepare(columns, rows, percentageOfWall, overflow);
+
+        BlockingQueue<PlayField> ready = puzzles.get(key);
+        PlayField toReturn = (ready != null) ? ready.poll() : null;
+        if (toReturn == null) toReturn = key.createPuzzle();
+
+        fillUp();
+        return toReturn;
+    }
+
+    /**
+     * to get the number of ready puzzles for the given settings
+     *
+     * @param columns the size(columns) of the puzzles
+     * @param rows the size(rows) of the puzzles
+     * @param percentageOfWall the max allowed percentage of wall pieces
+     * @param overflow overflow mode
+     * @return the number of ready puzzles
+     */
+    public int getReadyCount(int columns, int rows, int percentageOfWall, boolean overflow){
+        BlockingQueue<PlayField> ready = puzzles.get(new Key(columns, rows, percentageOfWall, overflow));
+        return (ready != null) ? ready.size() : 0;
+    }
+
+    /**
+     * to stop the background generation
+     */
+    public void shutdown(){
+        producer.shutdownNow();
+    }
+
+    /**
+     * to ask the producer to fill up the pool for the current settings, if it is not already doing so
+     */
+    private void fillUp(){
+        if (isFilling.compareAndSet(false, true)) {
+            producer.execute(() -> {
+                isFilling.set(false);
+                Key key = current;
+                BlockingQueue<PlayField> ready = puzzles.get(key);
+                while ((ready != null) && key.equals(current) && (ready.remainingCapacity() > 0)
+                        && !Thread.currentThread().isInterrupted()) {
+                    ready.offer(key.createPuzzle());
+                }
+            });
+        }
+    }
+
+    /**
+     * the settings of the puzzles
+     */
+    private static class Key {
+        /**
+         * the size(columns) of the puzzles
+         */
+        private final int columns;
+
+        /**
+         * the size(rows) of the puzzles
+         */
+        private final int rows;
+
+        /**
+         * the max allowed percentage of wall pieces
+         */
+        private final int percentageOfWall;
+
+        /**
+         * the overflow mode
+         */
+        private final boolean overflow;
+
+        /**
+         * Constructor for the settings
+         *
+         * @param columns the size(columns) of the puzzles
+         * @param rows the size(rows) of the puzzles
+         * @param percentageOfWall the max allowed percentage of wall pieces
+         * @param overflow overflow mode
+         */
+        Key(int columns, int rows, int percentageOfWall, boolean overflow){
+            this.columns = columns;
+            this.rows = rows;
+            this.percentageOfWall = percentageOfWall;
+            this.overflow = overflow;
+        }
+
+        /**
+         * to create a puzzle with these settings from a random seed
+         *
+         * @return the generated and mixed puzzle
+         */
+        PlayField createPuzzle(){
+            return PlayField.createPuzzle(columns, rows, overflow, percentageOfWall, ThreadLocalRandom.current().nextLong());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return columns == key.columns && rows == key.rows
+                    && percentageOfWall == key.percentageOfWall && overflow == key.overflow;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(columns, rows, percentageOfWall, overflow);
+        }
+    }
+}
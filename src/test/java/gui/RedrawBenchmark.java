@@ -0,0 +1,166 @@
+package gui;
+
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.StackPane;
+import javafx.stage.Stage;
+import logic.GUIConnector;
+import logic.Logic;
+import logic.Pipe;
+import logic.PipeType;
+import logic.Position;
+
+import java.util.function.Supplier;
+
+/**
+ * Benchmark for a full redraw of the play field, not a test.
+ * Displays a 100x100 play field once with new image views and images decoded for each cell, as it was done before,
+ * once with the {@link PipeCell}s of a {@link GridBoard} and the sprites of the {@link SpriteAtlas}
+ * and once on the canvas of a {@link CanvasBoard}, and prints the time of each.
+ * The time is taken from the display of the play field until the board is rendered, by a snapshot of the board,
+ * as the boards only draw in the next layout pass. Each run displays the play field on a new, empty board,
+ * which is laid out and rendered once before, so that the sprite atlas is ready and the whole board is drawn.
+ * Needs a display, as it shows a window.
+ */
+public class RedrawBenchmark extends Application {
+    /**
+     * the size of the square board
+     */
+    private static final int SIZE = 100;
+
+    /**
+     * how often each measurement is repeated, the first runs warm up the JIT compiler
+     */
+    private static final int RUNS = 3;
+
+    @Override
+    public void start(Stage stage) {
+        HBox root = new HBox();
+        stage.setScene(new Scene(root, 4 * SIZE, 4 * SIZE));
+        stage.show();
+
+        Logic game = new Logic(createDecodingView().gui, SIZE, SIZE, 20, false);
+        measure("decoded per cell", game, root, RedrawBenchmark::createDecodingView);
+        measure("sprite atlas cells", game, root, () -> createBoardView(new GridBoard(SIZE, SIZE)));
+        measure("canvas", game, root, () -> createBoardView(new CanvasBoard(SIZE, SIZE)));
+        System.out.printf("pipe images %d KB of texture memory%n", PipeImage.getTextureMemory() / 1024);
+        Platform.exit();
+    }
+
+    /**
+     * to measure the full redraw of the play field, until the board is rendered
+     *
+     * @param name the name of the measurement
+     * @param game the game
+     * @param root the root of the scene, into which the board is put
+     * @param views the creator of a new, empty board for each run
+     */
+    private static void measure(String name, Logic game, HBox root, Supplier<View> views) {
+        long nanos = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            View view = views.get();
+            root.getChildren().setAll(view.node);
+            view.node.snapshot(null, null);
+            game.setGui(view.gui);
+
+            long start = System.nanoTime();
+            game.displayPlayField();
+            view.node.snapshot(null, null);
+            nanos = Math.min(nanos, System.nanoTime() - start);
+        }
+        System.out.printf("%dx%d %-18s redraw %9.1f ms%n", SIZE, SIZE, name, nanos / 1e6);
+    }
+
+    /**
+     * to create a grid of StackPanes, into which the pipes are displayed as it was done before
+     *
+     * @return the grid and its connection to the game
+     */
+    private static View createDecodingView() {
+        StackPane[][] stackPanes = new StackPane[SIZE][SIZE];
+        GridPane decodingGrid = new GridPane();
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                stackPanes[i][j] = new StackPane();
+                stackPanes[i][j].setPrefSize(4, 4);
+                decodingGrid.add(stackPanes[i][j], i, j);
+            }
+        }
+        return new View(decodingGrid, new DecodingGUI(stackPanes));
+    }
+
+    /**
+     * to create the view of a board
+     *
+     * @param board the board
+     * @return the board and its connection to the game
+     */
+    private static View createBoardView(BoardView board) {
+        board.setPrefSize(4 * SIZE, 4 * SIZE);
+        return new View(board, new JavaFXGUI(null, board));
+    }
+
+    /**
+     * a board in the scene and the connection of the game to it
+     */
+    private static class View {
+        private final Region node;
+        private final GUIConnector gui;
+
+        View(Region node, GUIConnector gui) {
+            this.node = node;
+            this.gui = gui;
+        }
+    }
+
+    /**
+     * the display of the pipes as it was before the images were shared, each cell decodes its image
+     */
+    private static class DecodingGUI implements GUIConnector {
+        /**
+         * the StackPane array used to put the pipes' images
+         */
+        private final StackPane[][] pipeStackPanes;
+
+        DecodingGUI(StackPane[][] pipeStackPanes) {
+            this.pipeStackPanes = pipeStackPanes;
+        }
+
+        @Override
+        public void displayPipe(Position pos, Pipe pipe, boolean isSource) {
+            boolean isFilled = pipe.getIsFilled();
+            ImageView imgView = new ImageView();
+            imgView.setRotate(pipe.getRotation().getValue());
+            String path = switch (pipe.getPipeType()) {
+                case END_PIPE ->        PipeImage.END_PIPE.getFilePath(isFilled);
+                case CURVE_PIPE ->      PipeImage.CURVE_PIPE.getFilePath(isFilled);
+                case STRAIGHT_PIPE ->   PipeImage.STRAIGHT_PIPE.getFilePath(isFilled);
+                case T_PIPE ->          PipeImage.T_PIPE.getFilePath(isFilled);
+                default ->              PipeImage.WALL.getFilePath();
+            };
+            imgView.setImage(new Image(path));
+            pipeStackPanes[pos.getX()][pos.getY()].getChildren().setAll(imgView);
+            if ((isSource) && (pipe.getPipeType() != PipeType.WALL)) {
+                pipeStackPanes[pos.getX()][pos.getY()].getChildren().add(new ImageView(new Image(PipeImage.SOURCE.getFilePath())));
+            }
+        }
+
+        @Override
+        public void onGameEnd(int turns) {
+        }
+
+        @Override
+        public void resize(int columns, int rows) {
+        }
+    }
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+}
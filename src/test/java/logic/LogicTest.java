@@ -2,6 +2,19 @@ package logic;
 
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.Assert.*;
 
 public class LogicTest {
@@ -271,4 +284,430 @@ public class LogicTest {
             }
         }
     }
+
+    /**
+     * Does the puzzle pool fill up in the background and give puzzles with the asked settings?
+     */
+    @Test
+    public void testNewGameFromPuzzlePool() throws InterruptedException {
+        PuzzlePool pool = new PuzzlePool(2);
+        pool.prepare(7, 5, 20, false);
+        for (int i = 0; (i < 500) && (pool.getReadyCount(7, 5, 20, false) < 2); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, pool.getReadyCount(7, 5, 20, false));
+
+        Logic game = new Logic(new FakeGUI(), pool.take(7, 5, 20, false));
+        assertEquals(7, game.getPlayField().getColumns());
+        assertEquals(5, game.getPlayField().getRows());
+        assertEquals(20, game.getPlayField().getPercentageOfWall());
+
+        pool.prepare(6, 6, 20, true);
+        assertEquals(0, pool.getReadyCount(7, 5, 20, false));
+        PlayField playField = pool.take(4, 3, 0, true);
+        assertEquals(4, playField.getColumns());
+        assertTrue(playField.getOverflow());
+        pool.shutdown();
+    }
+
+    /**
+     * Is the game saved and loaded the same in the binary and in the JSON format,
+     * with the format detected when loading?
+     */
+    @Test
+    public void testSaveAndLoadBinaryAndJson() throws Exception {
+        Logic game = new Logic(new FakeGUI(), PlayField.createPuzzle(7, 5, true, 30, 11L));
+        for (String extension : new String[]{".fpb", ".json"}) {
+            File file = File.createTempFile("floodpipe", extension);
+            file.deleteOnExit();
+            game.saveGame(file);
+
+            Logic loaded = new Logic(new FakeGUI(), PlayField.createPuzzle(2, 2, false, 0, 1L));
+            loaded.loadGame(file);
+            assertEquals(game.fieldToString(), loaded.fieldToString());
+            assertEquals(game.getPlayField().getSourcePos(), loaded.getPlayField().getSourcePos());
+            assertTrue(loaded.getPlayField().getOverflow());
+            assertEquals(Long.valueOf(11L), loaded.getPlayField().getSeed());
+        }
+    }
+
+    /**
+     * Is a broken binary file rejected when loading?
+     */
+    @Test(expected = IOException.class)
+    public void testLoadBrokenBinaryFile() throws Exception {
+        Logic game = new Logic(new FakeGUI(), PlayField.createPuzzle(4, 3, false, 0, 3L));
+        File file = File.createTempFile("floodpipe", ".fpb");
+        file.deleteOnExit();
+        game.saveGame(file);
+        byte[] content = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(content, content.length - 1));
+
+        game.loadGame(file);
+    }
+
+    /**
+     * Can each level of a puzzle pack be loaded by its number, also after more levels were appended?
+     */
+    @Test
+    public void testPuzzlePackLevels() throws Exception {
+        File file = File.createTempFile("floodpipe", PuzzlePack.FILE_EXTENSION);
+        file.deleteOnExit();
+        PlayField[] levels = new PlayField[7];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = PlayField.createPuzzle(3 + i, 2 + (i % 3), (i % 2) == 0, 20, i);
+        }
+
+        try (PuzzlePackWriter writer = new PuzzlePackWriter(file.toPath(), false)) {
+            for (int i = 0; i < 4; i++) writer.append(levels[i]);
+        }
+        try (PuzzlePackWriter writer = new PuzzlePackWriter(file.toPath(), true)) {
+            assertEquals(4, writer.getLevelCount());
+            for (int i = 4; i < levels.length; i++) writer.append(levels[i]);
+        }
+
+        assertTrue(PuzzlePack.isPack(file.toPath()));
+        assertEquals(levels.length, PuzzlePack.getLevelCount(file.toPath()));
+        Logic game = new Logic(new FakeGUI(), PlayField.createPuzzle(2, 2, false, 0, 1L));
+        for (int i = levels.length - 1; i >= 0; i--) {
+            game.loadLevel(file, i);
+            assertEquals(new Logic(new FakeGUI(), levels[i]).fieldToString(), game.fieldToString());
+            assertEquals(levels[i].getSourcePos(), game.getPlayField().getSourcePos());
+            assertEquals(levels[i].getOverflow(), game.getPlayField().getOverflow());
+            assertEquals(Long.valueOf(i), game.getPlayField().getSeed());
+        }
+    }
+
+    /**
+     * Are the levels of a pack kept after an unfinished append, e.g. after a crash, and can levels be appended again?
+     */
+    @Test
+    public void testPuzzlePackUnfinishedAppend() throws Exception {
+        File file = File.createTempFile("floodpipe", PuzzlePack.FILE_EXTENSION);
+        file.deleteOnExit();
+        PlayField first = PlayField.createPuzzle(4, 3, false, 20, 1L);
+        PlayField second = PlayField.createPuzzle(5, 4, true, 20, 2L);
+        try (PuzzlePackWriter writer = new PuzzlePackWriter(file.toPath(), false)) {
+            writer.append(first);
+        }
+
+        // a level and a part of the index written after the old index, but no new header
+        Files.write(file.toPath(), new byte[45], StandardOpenOption.APPEND);
+        assertEquals(1, PuzzlePack.getLevelCount(file.toPath()));
+        assertEquals(Long.valueOf(1L), PuzzlePack.readLevel(file.toPath(), 0).getSeed());
+
+        try (PuzzlePackWriter writer = new PuzzlePackWriter(file.toPath(), true)) {
+            writer.append(second);
+        }
+        assertEquals(2, PuzzlePack.getLevelCount(file.toPath()));
+        assertEquals(Long.valueOf(1L), PuzzlePack.readLevel(file.toPath(), 0).getSeed());
+        assertEquals(new Logic(new FakeGUI(), second).fieldToString(),
+                new Logic(new FakeGUI(), PuzzlePack.readLevel(file.toPath(), 1)).fieldToString());
+    }
+
+    /**
+     * Is a level number outside of a puzzle pack rejected?
+     */
+    @Test(expected = IOException.class)
+    public void testPuzzlePackMissingLevel() throws Exception {
+        File file = File.createTempFile("floodpipe", PuzzlePack.FILE_EXTENSION);
+        file.deleteOnExit();
+        try (PuzzlePackWriter writer = new PuzzlePackWriter(file.toPath(), false)) {
+            writer.append(PlayField.createPuzzle(4, 3, false, 0, 3L));
+        }
+
+        PuzzlePack.readLevel(file.toPath(), 1);
+    }
+
+    /**
+     * Are a game saved and loaded in the background, with the progress and the result reported through the executor?
+     */
+    @Test
+    public void testSaveAndLoadAsync() throws Exception {
+        LinkedBlockingQueue<Runnable> callbacks = new LinkedBlockingQueue<>();
+        Executor callbackExecutor = callbacks::add;
+        Logic game = new Logic(new FakeGUI(), PlayField.createPuzzle(30, 20, false, 20, 5L));
+
+        for (String extension : new String[]{".fpb", ".json"}) {
+            Logic loaded = new Logic(new FakeGUI(), PlayField.createPuzzle(2, 2, false, 0, 1L));
+            File file = File.createTempFile("floodpipe", extension);
+            file.deleteOnExit();
+            List<Double> progress = new ArrayList<>();
+            ConcurrentLinkedQueue<String> results = new ConcurrentLinkedQueue<>();
+            FileTaskListener listener = new FileTaskListener() {
+                @Override
+                public void onProgress(double value) {
+                    progress.add(value);
+                }
+
+                @Override
+                public void onSucceeded() {
+                    results.add("succeeded");
+                }
+
+                @Override
+                public void onFailed(Exception e) {
+                    results.add("failed");
+                }
+            };
+
+            game.saveGameAsync(file, callbackExecutor, listener);
+            runCallbacksUntilResult(callbacks, results);
+            loaded.loadGameAsync(file, callbackExecutor, listener);
+            // the play field is only replaced through the callback executor
+            assertNotEquals(game.fieldToString(), loaded.fieldToString());
+            runCallbacksUntilResult(callbacks, results);
+
+            assertEquals(Arrays.asList("succeeded", "succeeded"), new ArrayList<>(results));
+            assertEquals(game.fieldToString(), loaded.fieldToString());
+            assertEquals(1.0, progress.get(progress.size() - 1), 0);
+            for (int i = 1; i < progress.size(); i++) {
+                assertTrue((progress.get(i) > progress.get(i - 1)) || (progress.get(i) == 0));
+            }
+
+            Files.write(file.toPath(), new byte[]{'{'});
+            loaded.loadGameAsync(file, callbackExecutor, listener);
+            runCallbacksUntilResult(callbacks, results);
+            assertEquals("failed", new ArrayList<>(results).get(2));
+            assertEquals(game.fieldToString(), loaded.fieldToString());
+        }
+    }
+
+    /**
+     * to run the callbacks of a task in the background until its result is reported
+     *
+     * @param callbacks the callbacks
+     * @param results the reported results
+     */
+    private void runCallbacksUntilResult(LinkedBlockingQueue<Runnable> callbacks, ConcurrentLinkedQueue<String> results)
+            throws InterruptedException {
+        int count = results.size();
+        while (results.size() == count) {
+            Runnable callback = callbacks.poll(10, TimeUnit.SECONDS);
+            assertNotNull(callback);
+            callback.run();
+        }
+    }
+
+    /**
+     * Is a game restored from its journal, with the changes of the game and the editor replayed onto the base?
+     */
+    @Test
+    public void testRestoreGameFromJournal() throws Exception {
+        File file = File.createTempFile("floodpipe", MoveJournal.FILE_EXTENSION);
+        file.deleteOnExit();
+        MoveJournal journal = new MoveJournal(file.toPath());
+        Logic game = new Logic(new FakeGUI(), PlayField.createPuzzle(6, 5, false, 20, 8L));
+        game.setJournal(journal);
+
+        game.rotated(new Position(0, 0), true);
+        game.rotated(new Position(5, 4), false);
+        game.rotated(new Position(2, 3), false);
+        journal.flush();
+        MoveJournal.Session session = MoveJournal.replay(file.toPath());
+        assertEquals(game.fieldToString(), new Logic(new FakeGUI(), session.getPlayField()).fieldToString());
+        assertEquals(3, session.getTurns());
+        assertEquals(Long.valueOf(8L), session.getPlayField().getSeed());
+        assertFalse(session.isEditorMode());
+
+        journal.setEditorMode(true);
+        Pipe pipe = new Pipe();
+        pipe.setPipeType(PipeType.T_PIPE);
+        pipe.setRotation(Rotation.NINETY);
+        game.setPipe(new Position(1, 1), pipe);
+        game.updateSourcePos(new Position(4, 3));
+        game.setOverflowMode(true);
+        game.resize(5, 7);
+        game.setPipe(new Position(4, 6), pipe);
+        journal.close();
+
+        // an incomplete record at the end, as after a crash, is ignored
+        Files.write(file.toPath(), new byte[]{1, 0, 0}, StandardOpenOption.APPEND);
+        session = MoveJournal.replay(file.toPath());
+        assertEquals(game.fieldToString(), new Logic(new FakeGUI(), session.getPlayField()).fieldToString());
+        assertEquals(new Position(4, 3), session.getPlayField().getSourcePos());
+        assertTrue(session.getPlayField().getOverflow());
+        assertNull(session.getPlayField().getSeed());
+        assertTrue(session.isEditorMode());
+        assertEquals(9, session.getRecordCount());
+    }
+
+    /**
+     * Are full batches of the journal and a new base written by the background thread, in the order they were made?
+     */
+    @Test
+    public void testJournalHandsBatchesToBackground() throws Exception {
+        File file = File.createTempFile("floodpipe", MoveJournal.FILE_EXTENSION);
+        file.deleteOnExit();
+        MoveJournal journal = new MoveJournal(file.toPath());
+        Logic game = new Logic(new FakeGUI(), PlayField.createPuzzle(6, 5, false, 20, 8L));
+        game.setJournal(journal);
+
+        for (int i = 0; i < 10000; i++) {
+            game.rotated(new Position(i % 6, i % 5), (i % 3) == 0);
+        }
+        game.setJournal(journal);
+        game.rotated(new Position(1, 2), true);
+        journal.close();
+
+        MoveJournal.Session session = MoveJournal.replay(file.toPath());
+        assertEquals(game.fieldToString(), new Logic(new FakeGUI(), session.getPlayField()).fieldToString());
+        assertEquals(10001, session.getTurns());
+        assertEquals(1, session.getRecordCount());
+    }
+
+    /**
+     * Does a cleared journal hold no game anymore, until the next game starts it again?
+     */
+    @Test
+    public void testClearJournal() throws Exception {
+        File file = File.createTempFile("floodpipe", MoveJournal.FILE_EXTENSION);
+        file.deleteOnExit();
+        MoveJournal journal = new MoveJournal(file.toPath());
+        Logic game = new Logic(new FakeGUI(), PlayField.createPuzzle(6, 5, false, 20, 8L));
+        game.setJournal(journal);
+        game.rotated(new Position(0, 0), true);
+        journal.clear();
+        game.rotated(new Position(1, 0), true);
+        journal.flush();
+        assertEquals(0, file.length());
+
+        game.setJournal(journal);
+        game.rotated(new Position(2, 0), true);
+        journal.close();
+        MoveJournal.Session session = MoveJournal.replay(file.toPath());
+        assertEquals(game.fieldToString(), new Logic(new FakeGUI(), session.getPlayField()).fieldToString());
+        assertEquals(1, session.getRecordCount());
+        assertFalse(session.isSolved());
+    }
+
+    /**
+     * Are rotations undone and redone, and is the redo history dropped by a new rotation?
+     */
+    @Test
+    public void testUndoAndRedoRotations() {
+        Logic game = new Logic(new FakeGUI(), PlayField.createPuzzle(300, 200, false, 20, 4L));
+        List<String> boards = new ArrayList<>();
+        boards.add(game.fieldToString());
+        Random rand = new Random(6);
+        for (int i = 0; i < 20; i++) {
+            game.rotated(findPipe(game, rand), rand.nextBoolean());
+            boards.add(game.fieldToString());
+        }
+
+        for (int i = 19; i >= 0; i--) {
+            assertTrue(game.undo());
+            assertEquals(boards.get(i), game.fieldToString());
+        }
+        assertFalse(game.undo());
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(game.redo());
+            assertEquals(boards.get(i), game.fieldToString());
+        }
+
+        game.rotated(findPipe(game, rand), true);
+        assertFalse(game.redo());
+        assertTrue(game.undo());
+        assertEquals(boards.get(5), game.fieldToString());
+    }
+
+    /**
+     * to find a random pipe which is not a wall piece, as a wall piece does not change when rotated
+     *
+     * @param game the game
+     * @param rand the random generator
+     * @return the position of the pipe
+     */
+    private Position findPipe(Logic game, Random rand) {
+        Position toReturn;
+        do {
+            toReturn = new Position(rand.nextInt(game.getPlayField().getColumns()), rand.nextInt(game.getPlayField().getRows()));
+        } while (game.getPlayField().getField(toReturn).getPipeType() == PipeType.WALL);
+        return toReturn;
+    }
+
+    /**
+     * Are the changes in the editor undone and redone, also the source and a new size?
+     */
+    @Test
+    public void testUndoAndRedoInEditor() {
+        Position sourcePos = new Position(0,0);
+        String board =
+                            "╺┓\n"
+                        +   "╺┛\n";
+        Logic game = new Logic(new FakeGUI(), board, sourcePos);
+        String before = game.fieldToString();
+
+        Pipe pipe = new Pipe();
+        pipe.setPipeType(PipeType.STRAIGHT_PIPE);
+        pipe.setRotation(Rotation.ZERO);
+        game.setPipe(new Position(1, 1), pipe);
+        game.updateSourcePos(new Position(1, 0));
+        game.resize(3, 2);
+        String after = game.fieldToString();
+
+        assertTrue(game.undo());
+        assertEquals(2, game.getPlayField().getColumns());
+        assertEquals(new Position(1, 0), game.getPlayField().getSourcePos());
+        assertTrue(game.undo());
+        assertEquals(sourcePos, game.getPlayField().getSourcePos());
+        assertTrue(game.undo());
+        assertEquals(before, game.fieldToString());
+
+        assertTrue(game.redo());
+        assertTrue(game.redo());
+        assertTrue(game.redo());
+        assertEquals(after, game.fieldToString());
+        assertEquals(new Position(1, 0), game.getPlayField().getSourcePos());
+        assertFalse(game.redo());
+    }
+
+    /**
+     * Is the whole play field displayed in one batch, and are the pipes filled in the editor displayed in one batch,
+     * with the same pipes as the display of each single cell?
+     */
+    @Test
+    public void testDisplayPipesInBatches() {
+        Position sourcePos = new Position(0,0);
+        String board =
+                            "╺┓\n"
+                        +   "╺┛\n";
+        List<int[]> batches = new ArrayList<>();
+        List<PlayField> wholeFields = new ArrayList<>();
+        List<Pipe> singlePipes = new ArrayList<>();
+        Logic game = new Logic(new FakeGUI() {
+            @Override
+            public void displayPipe(Position pos, Pipe pipe, boolean isSource) {
+                singlePipes.add(pipe);
+            }
+
+            @Override
+            public void displayPipes(PlayField playField, int[] cells) {
+                batches.add(cells);
+                super.displayPipes(playField, cells);
+            }
+
+            @Override
+            public void displayPipes(PlayField playField) {
+                wholeFields.add(playField);
+                super.displayPipes(playField);
+            }
+        }, board, sourcePos);
+
+        batches.clear();
+        wholeFields.clear();
+        singlePipes.clear();
+        game.displayPlayField();
+        assertEquals(0, batches.size());
+        assertEquals(1, wholeFields.size());
+        assertEquals(4, singlePipes.size());
+
+        batches.clear();
+        game.fillAllConnectedPipes();
+        assertEquals(1, batches.size());
+        assertEquals(4, batches.get(0).length);
+        for (int index : batches.get(0)) {
+            assertTrue(game.getPlayField().getField(game.getPlayField().toPosition(index)).getIsFilled());
+        }
+    }
 }
@@ -139,4 +139,29 @@ public class PipeTest {
         assertEquals(PipeType.T_PIPE, pipe.getPipeType());
         assertEquals(Rotation.TWO_SEVENTY,pipe.getRotation());
     }
+
+    @Test
+    public void testPipeShapesAreShared(){
+        Pipe pipe1 = new Pipe(PipeType.CURVE_PIPE, Rotation.NINETY);
+        Pipe pipe2 = new Pipe();
+        pipe2.setPipe(6);
+
+        assertSame(pipe1.getShape(), pipe2.getShape());
+
+        pipe1.clockwise();
+        assertEquals(12, pipe1.getPipeNumber());
+        pipe1.counterclockwise();
+        pipe1.counterclockwise();
+        assertEquals(3, pipe1.getPipeNumber());
+    }
+
+    @Test
+    public void testStraightPipeRotatesBetweenTwoShapes(){
+        Pipe pipe = new Pipe(PipeType.STRAIGHT_PIPE, Rotation.NINETY);
+
+        pipe.clockwise();
+        assertEquals(Rotation.ZERO, pipe.getRotation());
+        pipe.counterclockwise();
+        assertEquals(Rotation.NINETY, pipe.getRotation());
+    }
 }
@@ -1,6 +1,19 @@
 package logic;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+
 import static org.junit.Assert.*;
 
 public class PlayFieldTest {
@@ -91,6 +104,186 @@ public class PlayFieldTest {
         }
     }
 
+    /**
+     * Does the randomly generated playing field have exactly the allowed number of wall pieces,
+     * also in overflow mode?
+     */
+    @Test
+    public void testFieldHasExactlyTheAllowedWallPieces(){
+        Random rand = new Random(8);
+
+        for(int i = 0;i <= 200;i++) {
+            int columns = 2 + rand.nextInt(14);
+            int rows = 2 + rand.nextInt(14);
+            int percentageOfWall = rand.nextInt(75);
+            PlayField playField = new PlayField(columns, rows, rand.nextBoolean());
+            playField.generatePlayField(percentageOfWall);
+
+            int wallCount = 0;
+            for (int c = 0; c < columns; c++) {
+                for (int r = 0; r < rows; r++) {
+                    if (playField.getField(new Position(c, r)).getPipeType() == PipeType.WALL)
+                        wallCount++;
+                }
+            }
+            assertEquals(((columns * rows * percentageOfWall) / 100), wallCount);
+            assertNotEquals(PipeType.WALL, playField.getField(playField.getSourcePos()).getPipeType());
+            assertTrue(playField.checkAllPipesReachableFromSource());
+            assertTrue(playField.checkOpenEnd());
+        }
+    }
+
+    /**
+     * Is a large playing field without wall pieces generated solvable?
+     */
+    @Test
+    public void testLargeFieldSolvable(){
+        PlayField playField = new PlayField(300, 200, false);
+        playField.generatePlayField(0);
+
+        assertTrue(playField.checkAllPipesReachableFromSource());
+        assertTrue(playField.checkOpenEnd());
+    }
+
+    /**
+     * Is the same puzzle created again from the same seed, and a different one from another seed?
+     */
+    @Test
+    public void testSameSeedCreatesSamePuzzle(){
+        PlayField playField1 = PlayField.createPuzzle(12, 9, true, 30, 42L);
+        PlayField playField2 = PlayField.createPuzzle(12, 9, true, 30, 42L);
+        PlayField playField3 = PlayField.createPuzzle(12, 9, true, 30, 43L);
+
+        assertEquals(playField1.getSourcePos(), playField2.getSourcePos());
+        boolean isDifferent = !playField1.getSourcePos().equals(playField3.getSourcePos());
+        for (int i = 0; i < 12; i++) {
+            for (int j = 0; j < 9; j++) {
+                Position pos = new Position(i,j);
+                assertEquals(playField1.getField(pos).getPipeNumber(), playField2.getField(pos).getPipeNumber());
+                if (playField1.getField(pos).getPipeNumber() != playField3.getField(pos).getPipeNumber())
+                    isDifferent = true;
+            }
+        }
+        assertTrue(isDifferent);
+        assertEquals(Long.valueOf(42L), playField1.getSeed());
+        assertEquals(30, playField1.getPercentageOfWall());
+    }
+
+    /**
+     * Are all puzzles of a batch generated in parallel, each the same as the puzzle created from its seed?
+     */
+    @Test
+    public void testBatchGeneratesPuzzlesFromTheirSeeds(){
+        Queue<PlayField> puzzles = new ConcurrentLinkedQueue<>();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        PuzzleBatchGenerator.Report report = new PuzzleBatchGenerator(pool).generate(8, 6, 30, true, 200, 5L, puzzles::add);
+        pool.shutdown();
+
+        assertEquals(200, puzzles.size());
+        assertEquals(200, report.getCount());
+        assertTrue(report.getPuzzlesPerSecond() > 0);
+        Set<Long> seeds = new HashSet<>();
+        for (PlayField puzzle : puzzles) {
+            assertTrue(seeds.add(puzzle.getSeed()));
+            PlayField expected = PlayField.createPuzzle(8, 6, true, 30, puzzle.getSeed());
+            assertEquals(expected.getSourcePos(), puzzle.getSourcePos());
+            for (int i = 0; i < 8; i++) {
+                for (int j = 0; j < 6; j++) {
+                    Position pos = new Position(i,j);
+                    assertEquals(expected.getField(pos).getPipeNumber(), puzzle.getField(pos).getPipeNumber());
+                }
+            }
+        }
+    }
+
+    /**
+     * Is the playing field saved in the JSON format of the game and loaded back the same?
+     */
+    @Test
+    public void testJsonFormat(){
+        Gson gson = new GsonBuilder().registerTypeAdapter(PlayField.class, new PlayFieldTypeAdapter()).create();
+        String board =
+                            "┏┳┓\n"
+                        +   "┗┻┛\n";
+        PlayField playField = new Logic(new FakeGUI(), board, new Position(1,0)).getPlayField();
+
+        String json = gson.toJson(playField, PlayField.class);
+        assertEquals("{\"source\":{\"x\":1,\"y\":0},\"overflow\":false,\"board\":[[6,3],[14,11],[12,9]]}", json);
+
+        PlayField loaded = gson.fromJson(json, PlayField.class);
+        assertEquals(3, loaded.getColumns());
+        assertEquals(2, loaded.getRows());
+        assertEquals(new Position(1,0), loaded.getSourcePos());
+        assertFalse(loaded.getOverflow());
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 2; j++) {
+                Position pos = new Position(i,j);
+                assertEquals(playField.getField(pos).getPipeNumber(), loaded.getField(pos).getPipeNumber());
+            }
+        }
+        assertTrue(loaded.checkOpenEnd());
+        assertTrue(loaded.checkAllPipesReachableFromSource());
+    }
+
+    /**
+     * Is a JSON play field with the source outside of the board rejected?
+     */
+    @Test(expected = JsonParseException.class)
+    public void testJsonSourceOutsideBoard(){
+        Gson gson = new GsonBuilder().registerTypeAdapter(PlayField.class, new PlayFieldTypeAdapter()).create();
+        gson.fromJson("{\"source\":{\"x\":3,\"y\":0},\"overflow\":false,\"board\":[[6,3],[14,11],[12,9]]}", PlayField.class);
+    }
+
+    /**
+     * Are solvable play fields with exactly the allowed wall pieces generated in the worst cases:
+     * boards only one or two cells wide, high percentages of wall pieces and the overflow mode?
+     */
+    @Test
+    public void testFieldGeneratedOnNarrowBoards(){
+        int[][] sizes = {{1,2}, {2,2}, {2,3}, {3,2}, {2,17}, {17,2}, {1,30}, {30,1}, {3,3}};
+        for (int[] size : sizes) {
+            int columns = size[0];
+            int rows = size[1];
+            for (boolean overflowMode : new boolean[]{false, true}) {
+                for (int percentageOfWall = 0; percentageOfWall <= 100; percentageOfWall += 5) {
+                    for (long seed = 0; seed < 20; seed++) {
+                        PlayField playField = new PlayField(columns, rows, overflowMode);
+                        playField.generatePlayField(percentageOfWall, seed);
+
+                        int wallCount = 0;
+                        for (int c = 0; c < columns; c++) {
+                            for (int r = 0; r < rows; r++) {
+                                if (playField.getField(new Position(c, r)).getPipeType() == PipeType.WALL)
+                                    wallCount++;
+                            }
+                        }
+                        int pieces = Math.max(2, columns * rows - ((columns * rows * percentageOfWall) / 100));
+                        assertEquals(columns * rows - pieces, wallCount);
+                        assertTrue(playField.checkAllPipesReachableFromSource());
+                        assertTrue(playField.checkOpenEnd());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Is the seed of a generated playing field kept when it is saved and loaded?
+     */
+    @Test
+    public void testSeedKeptInJson(){
+        Gson gson = new GsonBuilder().registerTypeAdapter(PlayField.class, new PlayFieldTypeAdapter()).create();
+        PlayField playField = PlayField.createPuzzle(5, 4, false, 20, -7L);
+
+        PlayField loaded = gson.fromJson(gson.toJson(playField, PlayField.class), PlayField.class);
+        assertEquals(Long.valueOf(-7L), loaded.getSeed());
+        assertEquals(20, loaded.getPercentageOfWall());
+
+        playField.setAllCellsAsWallPieces();
+        playField.setSourcePos(new Position(0,0));
+        loaded = gson.fromJson(gson.toJson(playField, PlayField.class), PlayField.class);
+        assertNull(loaded.getSeed());
+    }
 
     /**
      * Is the randomly generated playing field solvable?
@@ -197,6 +390,151 @@ public class PlayFieldTest {
         assertFalse(game.getPlayField().checkOpenEnd());
     }
 
+    /**
+     * Do the open ends and the reachable pipes follow the rotations of the pipes?
+     */
+    @Test
+    public void testOpenEndAndReachableFollowRotation(){
+        Position sourcePos = new Position(0,0);
+        String board =
+                          "┏━┳╸\n"
+                        + "┃╻┗┓\n"
+                        + "┗┻━┛\n";
+        Logic game = new Logic(new FakeGUI(), board, sourcePos);
+        PlayField playField = game.getPlayField();
+
+        assertTrue(playField.checkOpenEnd());
+        assertTrue(playField.checkAllPipesReachableFromSource());
+
+        playField.rotation(new Position(1,1), true);
+        assertFalse(playField.checkOpenEnd());
+        assertFalse(playField.checkAllPipesReachableFromSource());
+
+        playField.rotation(new Position(1,1), false);
+        assertTrue(playField.checkOpenEnd());
+        assertTrue(playField.checkAllPipesReachableFromSource());
+
+        playField.getField(new Position(3,0)).setPipe(PipeType.WALL, Rotation.ZERO);
+        assertFalse(playField.checkOpenEnd());
+        assertTrue(playField.checkAllPipesReachableFromSource());
+    }
+
+    /**
+     * Are the open ends counted correctly after random rotations, also in overflow mode?
+     */
+    @Test
+    public void testOpenEndCountedCorrectlyAfterRotations(){
+        Random rand = new Random(6);
+
+        for (int n = 0; n < 50; n++) {
+            PlayField playField = new PlayField(1 + rand.nextInt(5), 1 + rand.nextInt(5), rand.nextBoolean());
+            for (int i = 0; i < playField.getColumns(); i++) {
+                for (int j = 0; j < playField.getRows(); j++) {
+                    Pipe pipe = new Pipe();
+                    pipe.setPipe(rand.nextInt(15));
+                    playField.setField(new Position(i,j), pipe);
+                }
+            }
+            for (int k = 0; k < 20; k++) {
+                playField.rotation(new Position(rand.nextInt(playField.getColumns()), rand.nextInt(playField.getRows())), rand.nextBoolean());
+                if (rand.nextInt(5) == 0) playField.setOverflow(!playField.getOverflow());
+                assertEquals(hasNoOpenEndByScanning(playField), playField.checkOpenEnd());
+            }
+        }
+    }
+
+    /**
+     * Are the pipes reachable from the source still found correctly after random changes of the pipes?
+     */
+    @Test
+    public void testReachableFromSourceCorrectAfterChanges(){
+        Random rand = new Random(7);
+
+        for (int n = 0; n < 50; n++) {
+            PlayField playField = new PlayField(2 + rand.nextInt(6), 2 + rand.nextInt(6), rand.nextBoolean());
+            playField.generatePlayField(rand.nextInt(50));
+            for (int k = 0; k < 40; k++) {
+                Position pos = new Position(rand.nextInt(playField.getColumns()), rand.nextInt(playField.getRows()));
+                switch (rand.nextInt(6)) {
+                    case 0 -> playField.getField(pos).setPipe(rand.nextInt(15));
+                    case 1 -> playField.setOverflow(!playField.getOverflow());
+                    case 2 -> playField.setSourcePos(pos);
+                    default -> playField.rotation(pos, rand.nextBoolean());
+                }
+                boolean[][] reachable = findReachableByScanning(playField);
+                boolean allReachable = true;
+                for (int i = 0; i < playField.getColumns(); i++) {
+                    for (int j = 0; j < playField.getRows(); j++) {
+                        assertEquals(reachable[i][j], playField.isReachableFromSource(new Position(i,j)));
+                        if (!reachable[i][j] && playField.getField(new Position(i,j)).getPipeType() != PipeType.WALL)
+                            allReachable = false;
+                    }
+                }
+                assertEquals(allReachable, playField.checkAllPipesReachableFromSource());
+            }
+        }
+    }
+
+    /**
+     * to find the pipes reachable from the source by searching the whole field
+     */
+    private static boolean[][] findReachableByScanning(PlayField playField){
+        int columns = playField.getColumns();
+        int rows = playField.getRows();
+        boolean[][] reachable = new boolean[columns][rows];
+        Deque<Position> toCheck = new ArrayDeque<>();
+        reachable[playField.getSourcePos().getX()][playField.getSourcePos().getY()] = true;
+        toCheck.push(playField.getSourcePos());
+        while (!toCheck.isEmpty()) {
+            Position pos = toCheck.pop();
+            int pipeNumber = playField.getField(pos).getPipeNumber();
+            int[][] neighbours = {{pos.getX(), pos.getY() - 1}, {pos.getX() + 1, pos.getY()}, {pos.getX(), pos.getY() + 1}, {pos.getX() - 1, pos.getY()}};
+            for (int d = 0; d < 4; d++) {
+                int x = neighbours[d][0];
+                int y = neighbours[d][1];
+                if (playField.getOverflow()) {
+                    x = (x + columns) % columns;
+                    y = (y + rows) % rows;
+                }
+                if (((pipeNumber & (1 << d)) != 0) && x >= 0 && y >= 0 && x < columns && y < rows && !reachable[x][y]
+                        && ((playField.getField(new Position(x,y)).getPipeNumber() & (1 << ((d + 2) % 4))) != 0)) {
+                    reachable[x][y] = true;
+                    toCheck.push(new Position(x,y));
+                }
+            }
+        }
+        return reachable;
+    }
+
+    /**
+     * to check if there is no open end by scanning the whole field
+     */
+    private static boolean hasNoOpenEndByScanning(PlayField playField){
+        int columns = playField.getColumns();
+        int rows = playField.getRows();
+        for (int i = 0; i < columns; i++) {
+            for (int j = 0; j < rows; j++) {
+                int pipeNumber = playField.getField(new Position(i,j)).getPipeNumber();
+                int[][] neighbours = {{i, j - 1}, {i + 1, j}, {i, j + 1}, {i - 1, j}};
+                for (int d = 0; d < 4; d++) {
+                    if ((pipeNumber & (1 << d)) != 0) {
+                        int x = neighbours[d][0];
+                        int y = neighbours[d][1];
+                        if (playField.getOverflow()) {
+                            x = (x + columns) % columns;
+                            y = (y + rows) % rows;
+                        } else if (x < 0 || y < 0 || x >= columns || y >= rows) {
+                            return false;
+                        }
+                        int opposite = 1 << ((d + 2) % 4);
+                        if ((playField.getField(new Position(x,y)).getPipeNumber() & opposite) == 0) return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
     @Test
     public void testSetAllCellsAsWallPieces(){
         Position sourcePos = new Position(0,0);
@@ -264,4 +602,171 @@ public class PlayFieldTest {
 
         assertFalse(game.getPlayField().getField(new Position(3,2)).getIsFilled());
     }
+
+    @Test
+    public void testClearAllUnConnectedPipesFilledStateAtOnce(){
+        Position sourcePos = new Position(0,0);
+        String board =
+                          "┏━┳╸\n"
+                        + "┃╻┗┓\n"
+                        + "┗┻━┏\n";
+        Logic game = new Logic(new FakeGUI(), board, sourcePos);
+        PlayField playField = game.getPlayField();
+        playField.rotation(new Position(1,1), true);
+
+        for(int i = 0;i < playField.getColumns();i++){
+            for (int j = 0;j < playField.getRows();j++){
+                playField.getField(new Position(i,j)).setFilled(true);
+            }
+        }
+
+        int[] cleared = playField.clearUnConnectedPipesFilledState();
+
+        assertEquals(2, cleared.length);
+        assertEquals(new Position(1,1), playField.toPosition(cleared[0]));
+        assertEquals(new Position(3,2), playField.toPosition(cleared[1]));
+        assertFalse(playField.getField(new Position(1,1)).getIsFilled());
+        assertFalse(playField.getField(new Position(3,2)).getIsFilled());
+        assertTrue(playField.getField(new Position(2,2)).getIsFilled());
+        assertEquals(0, playField.clearUnConnectedPipesFilledState().length);
+    }
+
+    @Test
+    public void testGetFieldIsAViewOfTheCell(){
+        PlayField playField = new PlayField(3, 2, false);
+        Position pos = new Position(2,1);
+
+        Pipe pipe = playField.getField(pos);
+        pipe.setPipe(PipeType.T_PIPE, Rotation.NINETY);
+        pipe.setFilled(true);
+
+        assertEquals(PipeType.T_PIPE, playField.getField(pos).getPipeType());
+        assertEquals(Rotation.NINETY, playField.getField(pos).getRotation());
+        assertEquals(14, playField.getField(pos).getPipeNumber());
+        assertTrue(playField.getField(pos).getIsFilled());
+
+        playField.getField(pos).clockwise();
+        assertEquals(Rotation.ONE_EIGHTY, pipe.getRotation());
+        assertEquals(PipeType.WALL, playField.getField(new Position(1,1)).getPipeType());
+    }
+
+    @Test
+    public void testSetFieldCopiesThePipe(){
+        PlayField playField = new PlayField(2, 2, false);
+        Position pos = new Position(1,0);
+        Pipe pipe = new Pipe(PipeType.CURVE_PIPE, Rotation.TWO_SEVENTY);
+
+        playField.setField(pos, pipe);
+        pipe.setPipeType(PipeType.STRAIGHT_PIPE);
+
+        assertEquals(PipeType.CURVE_PIPE, playField.getField(pos).getPipeType());
+        assertEquals(9, playField.getField(pos).getPipeNumber());
+        assertFalse(playField.getField(pos).getIsFilled());
+    }
+
+    /**
+     * Does a long snake-shaped pipe not overflow the call stack?
+     */
+    @Test
+    public void testLongSnakePipeReachableFromSource(){
+        PlayField playField = createSnakePlayField(300, 300);
+
+        assertTrue(playField.checkAllPipesReachableFromSource());
+        assertTrue(playField.checkOpenEnd());
+    }
+
+    /**
+     * to create a play field with one pipe going row by row through all cells,
+     * from the left of the first row to the end of the last row
+     */
+    static PlayField createSnakePlayField(int columns, int rows){
+        PlayField playField = new PlayField(columns, rows, false);
+        playField.setSourcePos(new Position(0,0));
+
+        for (int j = 0; j < rows; j++) {
+            boolean toRight = (j % 2 == 0);
+            for (int i = 0; i < columns; i++) {
+                int x = toRight ? i : columns - 1 - i;
+                Pipe pipe = new Pipe();
+                if (i > 0) pipe.addOpenDirection(toRight ? Direction.LEFT : Direction.RIGHT);
+                else if (j > 0) pipe.addOpenDirection(Direction.TOP);
+                if (i < columns - 1) pipe.addOpenDirection(toRight ? Direction.RIGHT : Direction.LEFT);
+                else if (j < rows - 1) pipe.addOpenDirection(Direction.BOTTOM);
+                playField.setField(new Position(x, j), pipe);
+            }
+        }
+        return playField;
+    }
+
+    /**
+     * Are the pipes still filled in the order of scanning the field, also when pipes are rotated in between?
+     */
+    @Test
+    public void testFillOrderIsTheScanOrder(){
+        Random rand = new Random(4);
+
+        for (int n = 0; n < 20; n++) {
+            PlayField playField = new PlayField(10, 10, false);
+            playField.generatePlayField(30);
+            playField.mix();
+            PlayField scanned = new PlayField(10, 10, false);
+            scanned.setSourcePos(playField.getSourcePos());
+            for (int i = 0; i < 10; i++) {
+                for (int j = 0; j < 10; j++) {
+                    scanned.setField(new Position(i,j), playField.getField(new Position(i,j)));
+                }
+            }
+
+            Position pos;
+            do {
+                if (rand.nextInt(3) == 0) {
+                    Position rotated = new Position(rand.nextInt(10), rand.nextInt(10));
+                    playField.rotation(rotated, true);
+                    scanned.rotation(rotated, true);
+                    while (playField.clearOneUnConnectedPipeFilledState() != null);
+                    while (scanned.clearOneUnConnectedPipeFilledState() != null);
+                }
+                pos = playField.findNextFillablePipe();
+                assertEquals(findNextFillablePipeByScanning(scanned), pos);
+            } while (pos != null);
+        }
+    }
+
+    /**
+     * the former way to find the next fillable pipe, by scanning the whole field (without overflow)
+     */
+    private static Position findNextFillablePipeByScanning(PlayField playField){
+        Position sourcePos = playField.getSourcePos();
+        if (!playField.getField(sourcePos).getIsFilled()) {
+            playField.getField(sourcePos).setFilled(true);
+            return sourcePos;
+        }
+        for (int i = 0; i < playField.getColumns(); i++) {
+            for (int j = 0; j < playField.getRows(); j++) {
+                Pipe pipe = playField.getField(new Position(i,j));
+                if (pipe.getIsFilled()) {
+                    Position[] neighbours = {new Position(i, j - 1), new Position(i, j + 1), new Position(i + 1, j), new Position(i - 1, j)};
+                    boolean[] opens = {pipe.isOpenToTop(), pipe.isOpenToBottom(), pipe.isOpenToRight(), pipe.isOpenToLeft()};
+                    for (int d = 0; d < 4; d++) {
+                        Position next = neighbours[d];
+                        if (opens[d] && next.getX() >= 0 && next.getY() >= 0
+                                && next.getX() < playField.getColumns() && next.getY() < playField.getRows()) {
+                            Pipe nextPipe = playField.getField(next);
+                            boolean connected = switch (d) {
+                                case 0 -> nextPipe.isOpenToBottom();
+                                case 1 -> nextPipe.isOpenToTop();
+                                case 2 -> nextPipe.isOpenToLeft();
+                                default -> nextPipe.isOpenToRight();
+                            };
+                            if (connected && !nextPipe.getIsFilled()) {
+                                nextPipe.setFilled(true);
+                                return next;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
 }
@@ -0,0 +1,56 @@
+package logic;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Benchmark for the save formats, not a test.
+ * Saves and loads a generated play field in the JSON and in the binary format
+ * and prints the file size and the time of each.
+ * Run with e.g. -Xmx4g, because the largest board needs a lot of memory for the JSON format.
+ */
+public class SaveFormatBenchmark {
+    /**
+     * the sizes of the square boards to measure
+     */
+    private static final int[] SIZES = {100, 1000, 4000};
+
+    /**
+     * how often each measurement is repeated, the first runs warm up the JIT compiler
+     */
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) throws Exception {
+        for (int size : SIZES) {
+            Logic game = new Logic(new FakeGUI(), PlayField.createPuzzle(size, size, false, 30, size));
+            for (String extension : new String[]{".json", ".fpb"}) {
+                File file = File.createTempFile("floodpipe", extension);
+                file.deleteOnExit();
+                long saveNanos = Long.MAX_VALUE;
+                long loadNanos = Long.MAX_VALUE;
+                for (int run = 0; run < RUNS; run++) {
+                    long start = System.nanoTime();
+                    game.saveGame(file);
+                    saveNanos = Math.min(saveNanos, System.nanoTime() - start);
+
+                    start = System.nanoTime();
+                    game.loadGame(file);
+                    loadNanos = Math.min(loadNanos, System.nanoTime() - start);
+                }
+                System.out.printf("%dx%d %-5s %,12d bytes  save %8.1f ms  load %8.1f ms%n", size, size, extension,
+                        file.length(), saveNanos / 1e6, loadNanos / 1e6);
+                deleteFile(file);
+            }
+        }
+    }
+
+    /**
+     * to delete the file of a measurement right away, as the large files take a lot of space
+     *
+     * @param file the file
+     * @throws IOException if the file can not be deleted
+     */
+    private static void deleteFile(File file) throws IOException {
+        if (!file.delete()) throw new IOException("could not delete " + file);
+    }
+}